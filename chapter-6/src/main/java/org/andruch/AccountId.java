@@ -0,0 +1,70 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Getter;
+
+/**
+ * The identity of the owner of a public key. The encoded key, its Base64 form and its fingerprint
+ * (the SHA-256 of the encoded key) are computed once per key, instead of every time a payload is
+ * hashed or a key is printed. AccountIds are interned: there is only one per key in the JVM, so two
+ * of them are equal exactly when they are the same object, and hashing one costs nothing.
+ *
+ * <p>The registry keeps every key it has seen for the life of the JVM, which is fine for the
+ * bounded number of wallets and miners of a node.
+ */
+public final class AccountId implements Serializable {
+  @Serial private static final long serialVersionUID = 1L;
+
+  private static final Map<PublicKey, AccountId> REGISTRY = new ConcurrentHashMap<>();
+
+  @Getter private final PublicKey key;
+  @Getter private final transient Hash256 fingerprint;
+  @Getter private final transient String keyString;
+  private final transient byte[] encoded;
+
+  private AccountId(PublicKey key) {
+    this.key = key;
+    this.encoded = key.getEncoded();
+    this.keyString = TextEncoding.toBase64(encoded);
+    this.fingerprint = Hash256.sha256(encoded);
+  }
+
+  public static AccountId of(PublicKey key) {
+    AccountId id = REGISTRY.get(key);
+    return id != null ? id : REGISTRY.computeIfAbsent(key, AccountId::new);
+  }
+
+  // The encoded key, shared: callers must not modify it
+  byte[] encoded() {
+    return encoded;
+  }
+
+  // Deserialized AccountIds are replaced by the interned one
+  @Serial
+  private Object readResolve() {
+    return of(key);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    return obj instanceof AccountId other && fingerprint.equals(other.fingerprint);
+  }
+
+  @Override
+  public int hashCode() {
+    return fingerprint.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return fingerprint.toBase64();
+  }
+}
@@ -5,7 +5,11 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.AccessLevel;
 import lombok.Getter;
 
@@ -13,13 +17,17 @@ import lombok.Getter;
 public class Block implements Serializable {
   @Serial private static final long serialVersionUID = 1L;
 
-  private static final int TRANSACTION_UPPER_LIMIT = 100;
+  public static final int TRANSACTION_UPPER_LIMIT = 100;
   // to set a lower limit for demonstration purpose
   public static final int TRANSACTION_LOWER_LIMIT = 1;
   private int difficultyLevel = 20;
 
   // The miner who created/mined this block
   private PublicKey creator;
+
+  @Getter(AccessLevel.NONE)
+  private transient AccountId creatorId;
+
   // Once a block has been mined, no more changes should be allowed.
   private boolean mined = false;
 
@@ -33,58 +41,156 @@ public class Block implements Serializable {
   @Getter(AccessLevel.NONE)
   private List<Transaction> transactions = new ArrayList<>();
 
+  // The merkle root of the transactions and the reward transaction, null until it is needed and
+  // again whenever one of them is added or deleted
+  @Getter(AccessLevel.NONE)
+  private transient volatile Hash256 merkleRoot;
+
+  // The merkle frontier of the transactions, kept up to date as they are added one by one, null
+  // after a deletion and in deserialized blocks
+  @Getter(AccessLevel.NONE)
+  private transient MerkleAccumulator merkleAccumulator = new MerkleAccumulator();
+
   private long timestamp;
-  private String previousBlockHashID;
-  private int nonce = 0;
-  private String hashID;
+  private Hash256 previousBlockHashID;
+  // 64 bits, so parallel mining workers can each take a huge range of nonces of their own
+  private long nonce = 0;
+  private Hash256 hashID;
 
-  public Block(String previousBlockHashID, int difficultyLevel, PublicKey creator) {
+  public Block(Hash256 previousBlockHashID, int difficultyLevel, PublicKey creator) {
+    this(previousBlockHashID, difficultyLevel, creator, UtilityMethods.getTimeStamp());
+  }
+
+  Block(Hash256 previousBlockHashID, int difficultyLevel, PublicKey creator, long timestamp) {
     this.previousBlockHashID = previousBlockHashID;
-    this.timestamp = UtilityMethods.getTimeStamp();
+    this.timestamp = timestamp;
     this.difficultyLevel = difficultyLevel;
     this.creator = creator;
   }
 
-  protected String computeHashID() {
-    StringBuilder sb = new StringBuilder();
-    sb.append(this.previousBlockHashID + Long.toHexString(this.timestamp));
-    sb.append(this.computeMerkleRoot());
-    sb.append("" + nonce);
-    byte[] b = UtilityMethods.messageDigestSHA256_toBytes(sb.toString());
-    return UtilityMethods.toBinaryString(b);
+  protected Hash256 computeHashID() {
+    return computeHashID(this.nonce);
   }
 
-  private String computeMerkleRoot() {
-    String[] hashes;
-    // Lets allow blocks where the reward transaction is null
-    if (this.rewardTransaction == null) {
-      hashes = new String[this.transactions.size()];
-      for (int i = 0; i < this.transactions.size(); i++) {
-        hashes[i] = this.transactions.get(i).getHashID();
-      }
-    } else {
-      hashes = new String[this.transactions.size() + 1];
-      for (int i = 0; i < this.transactions.size(); i++) {
-        hashes[i] = this.transactions.get(i).getHashID();
+  // Computes the hashID the block would have with the given nonce, without changing the block.
+  // Several mining workers may call this concurrently.
+  Hash256 computeHashID(long nonce) {
+    return Hash256.of(computeHash(nonce));
+  }
+
+  // The raw SHA-256 digest behind the hashID, used to check the proof of work byte by byte
+  protected byte[] computeHash() {
+    return computeHash(this.nonce);
+  }
+
+  // The header is the prefix followed by the nonce as 8 big-endian bytes
+  byte[] computeHash(long nonce) {
+    byte[] prefix = this.computeHeaderPrefix();
+    byte[] header = Arrays.copyOf(prefix, prefix.length + Long.BYTES);
+    System.arraycopy(UtilityMethods.longToBytes(nonce), 0, header, prefix.length, Long.BYTES);
+    return UtilityMethods.messageDigestSHA256_toBytes(header);
+  }
+
+  // The part of the header that does not change while the block is being mined: the previous
+  // block hashID (32 bytes), the timestamp (8 bytes, big-endian) and the merkle root (32 bytes)
+  byte[] computeHeaderPrefix() {
+    byte[] prefix = new byte[Hash256.LENGTH + Long.BYTES + Hash256.LENGTH];
+    this.previousBlockHashID.writeTo(prefix, 0);
+    System.arraycopy(
+        UtilityMethods.longToBytes(this.timestamp), 0, prefix, Hash256.LENGTH, Long.BYTES);
+    this.computeMerkleRoot().writeTo(prefix, Hash256.LENGTH + Long.BYTES);
+    return prefix;
+  }
+
+  // Computed once per content of the block, however many hashIDs are computed from it
+  private Hash256 computeMerkleRoot() {
+    Hash256 root = this.merkleRoot;
+    if (root == null) {
+      MerkleAccumulator accumulator = this.merkleAccumulator;
+      if (accumulator == null) {
+        root = MerkleTree.computeRoot(merkleLeaves());
+      } else if (this.rewardTransaction == null) {
+        root = accumulator.getRoot();
+      } else {
+        // the reward transaction is the last leaf
+        root = accumulator.getRoot(this.rewardTransaction.getHashID());
       }
-      hashes[hashes.length - 1] = this.rewardTransaction.getHashID();
+      this.merkleRoot = root;
     }
+    return root;
+  }
 
-    return UtilityMethods.computeMerkleTreeRootHash(hashes);
+  // The merkle root in the header of this block, what a MerkleProof is checked against
+  public Hash256 getMerkleRoot() {
+    return computeMerkleRoot();
+  }
+
+  /**
+   * Proves that a transaction, or the reward transaction, is in this block to somebody who only
+   * knows the merkle root of the block.
+   *
+   * @return The proof, or null if the transaction is not in this block.
+   */
+  public MerkleProof getMerkleProof(Transaction t) {
+    List<Hash256> leaves = merkleLeaves();
+    int index = leaves.indexOf(t.getHashID());
+    if (index < 0) {
+      return null;
+    }
+    return MerkleTree.build(leaves).getProof(index);
+  }
+
+  // The hashIDs of the transactions, then that of the reward transaction. Lets allow blocks where
+  // the reward transaction is null.
+  List<Hash256> merkleLeaves() {
+    List<Hash256> leaves = new ArrayList<>(this.transactions.size() + 1);
+    for (Transaction t : this.transactions) {
+      leaves.add(t.getHashID());
+    }
+    if (this.rewardTransaction != null) {
+      leaves.add(this.rewardTransaction.getHashID());
+    }
+    return leaves;
   }
 
   // Only the creator of this block can mine the block, and the block can only be mined for once.
   public boolean mineTheBlock(PublicKey key) {
-    if (!key.equals(creator) || isMined()) return mined;
-    hashID = computeHashID();
-    while (!UtilityMethods.hashMeetsDifficultyLevel(hashID, difficultyLevel)) {
-      // System.out.println(hashID);
+    if (!isCreator(key) || isMined()) return mined;
+    long start = System.nanoTime();
+    long tries = 1;
+    BlockHeaderHasher hasher = new BlockHeaderHasher(this);
+    byte[] hash = hasher.hash(nonce);
+    while (!UtilityMethods.hashMeetsDifficultyLevel(hash, difficultyLevel)) {
       this.nonce++;
-      this.hashID = computeHashID();
+      tries++;
+      hash = hasher.hash(nonce);
     }
+    this.hashID = Hash256.of(hash);
+    long nanos = System.nanoTime() - start;
+    MiningMetrics.global().recordHashes(tries, nanos);
+    MiningMetrics.global().recordAttempt(true, difficultyLevel, nanos);
     return true;
   }
 
+  // Lets the mining engine search the nonce space with several threads.
+  public boolean mineTheBlock(PublicKey key, MiningEngine engine) {
+    if (!isCreator(key) || isMined()) return mined;
+    return engine.mine(this);
+  }
+
+  // Same as above, but mining stops as soon as cancelled is set
+  boolean mineTheBlock(
+      PublicKey key, MiningEngine engine, AtomicBoolean cancelled, AtomicLong hashes) {
+    if (!isCreator(key) || isMined()) return mined;
+    return engine.mine(this, cancelled, hashes);
+  }
+
+  // Called by the mining engine once a worker has found a nonce that meets the difficulty level
+  void setMiningResult(long nonce, Hash256 hashID) {
+    this.nonce = nonce;
+    this.hashID = hashID;
+  }
+
   /**
    * A block must be signed. This is how it works: The miner of this block generates a signature
    * based on the block's hashID and calls this method to set the signature. This method checks if
@@ -95,8 +201,8 @@ public class Block implements Serializable {
    */
   public boolean signTheBlock(PublicKey publicKey, byte[] signature) {
     if (!isSigned()
-        && publicKey.equals(creator)
-        && UtilityMethods.verifySignature(publicKey, signature, this.getHashID())) {
+        && isCreator(publicKey)
+        && UtilityMethods.verifySignature(publicKey, signature, this.getHashID().toBytes())) {
       this.signature = signature;
       return true;
     }
@@ -107,7 +213,7 @@ public class Block implements Serializable {
   // it is necessary to verify the signature. The verification requires
   // a public key, which is usually the creator's key.
   public boolean verifySignature(PublicKey publicKey) {
-    return UtilityMethods.verifySignature(publicKey, this.signature, this.getHashID());
+    return UtilityMethods.verifySignature(publicKey, this.signature, this.getHashID().toBytes());
   }
 
   // The transaction fee does not include the reward transaction
@@ -118,8 +224,9 @@ public class Block implements Serializable {
   // A block has only one reward transaction. It can be added only by the block
   // creator (the miner) and it cannot be changed once it has been added.
   public boolean setRewardTransaction(PublicKey publicKey, Transaction rewardTransaction) {
-    if (this.rewardTransaction == null && publicKey.equals(this.creator)) {
+    if (this.rewardTransaction == null && isCreator(publicKey)) {
       this.rewardTransaction = rewardTransaction;
+      this.merkleRoot = null;
       return true;
     }
     return false;
@@ -129,8 +236,10 @@ public class Block implements Serializable {
     if (this.getNumberOfTransactions() >= TRANSACTION_UPPER_LIMIT) {
       return false;
     }
-    if (key.equals(this.creator) && !this.isMined() && !this.isSigned()) {
+    if (isCreator(key) && !this.isMined() && !this.isSigned()) {
       this.transactions.add(t);
+      appendToMerkleAccumulator(t);
+      this.merkleRoot = null;
       return true;
     }
     return false;
@@ -138,26 +247,64 @@ public class Block implements Serializable {
 
   /** only the creator can delete a transaction before mined and before signed */
   public boolean deleteTransaction(Transaction ts, PublicKey key) {
-    if (!this.mined && !this.isSigned() && key.equals(this.getCreator())) {
-      return this.transactions.remove(ts);
+    if (!this.mined && !this.isSigned() && isCreator(key)) {
+      boolean removed = this.transactions.remove(ts);
+      if (removed) {
+        this.merkleAccumulator = null;
+        this.merkleRoot = null;
+      }
+      return removed;
     } else {
       return false;
     }
   }
 
   public boolean deleteTransaction(int index, PublicKey key) {
-    if (!this.mined && !this.isSigned() && key.equals(this.getCreator())) {
+    if (!this.mined && !this.isSigned() && isCreator(key)) {
       Transaction ts = this.transactions.remove(index);
+      this.merkleAccumulator = null;
+      this.merkleRoot = null;
       return (ts != null);
     } else {
       return false;
     }
   }
 
+  // A frontier dropped by a deletion, or never there after deserialization, is rebuilt from all the
+  // transactions once, then kept up to date again
+  private void appendToMerkleAccumulator(Transaction t) {
+    if (this.merkleAccumulator == null) {
+      MerkleAccumulator accumulator = new MerkleAccumulator();
+      for (Transaction added : this.transactions) {
+        accumulator.append(added.getHashID());
+      }
+      this.merkleAccumulator = accumulator;
+    } else {
+      this.merkleAccumulator.append(t.getHashID());
+    }
+  }
+
+  public AccountId getCreatorId() {
+    if (creatorId == null) {
+      creatorId = AccountId.of(creator);
+    }
+    return creatorId;
+  }
+
+  // AccountIds are interned, so the creator is recognized by identity instead of comparing keys
+  private boolean isCreator(PublicKey key) {
+    return getCreatorId() == AccountId.of(key);
+  }
+
   public int getNumberOfTransactions() {
     return transactions.size();
   }
 
+  // A read-only view of the transactions, the reward transaction is not part of it
+  List<Transaction> getTransactions() {
+    return Collections.unmodifiableList(transactions);
+  }
+
   public Transaction getTransaction(int i) {
     return transactions.get(i);
   }
@@ -0,0 +1,50 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes the header of a block while it is being mined. During mining only the nonce changes, so
+ * the fixed prefix of the header (previous block hashID, timestamp and merkle root) is fed into a
+ * SHA-256 digest once. For every nonce that digest state (the midstate) is cloned and only the
+ * nonce is hashed on top of it.
+ *
+ * <p>A hasher is not thread-safe, every mining worker needs its own instance. The hashes are the
+ * same as the ones from {@link Block#computeHashID()}.
+ */
+class BlockHeaderHasher {
+  private final MessageDigest midstate;
+  private final byte[] nonceBytes = new byte[Long.BYTES];
+  private final byte[] hash = new byte[32];
+
+  BlockHeaderHasher(Block block) {
+    try {
+      this.midstate = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    this.midstate.update(block.computeHeaderPrefix());
+  }
+
+  /**
+   * Hashes the header with the given nonce. The returned array is reused by the next call.
+   *
+   * @return The 32 bytes of the SHA-256 digest.
+   */
+  byte[] hash(long nonce) {
+    try {
+      MessageDigest md = (MessageDigest) midstate.clone();
+      for (int i = nonceBytes.length - 1; i >= 0; i--) {
+        nonceBytes[i] = (byte) nonce;
+        nonce >>>= Byte.SIZE;
+      }
+      md.update(nonceBytes);
+      md.digest(hash, 0, hash.length);
+      return hash;
+    } catch (CloneNotSupportedException | DigestException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
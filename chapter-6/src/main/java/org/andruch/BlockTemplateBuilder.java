@@ -0,0 +1,139 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assembles the blocks of a miner out of a pool of pending transactions. Instead of validating
+ * every transaction against the whole ledger one at a time, the ledger is scanned once per block
+ * and the pending transactions are checked in a batch against that scan: their signature, that they
+ * are not already in the ledger and that none of their inputs is spent, neither in the ledger nor
+ * by another transaction of the same block. The block is filled up to {@link
+ * Block#TRANSACTION_UPPER_LIMIT} transactions, those paying the highest fee first, and the reward
+ * transaction is added last.
+ *
+ * <p>A transaction stays pending until a ledger it is built upon already contains it or it can no
+ * longer be added to it, so the transactions left out of a full block go into the next one.
+ */
+public class BlockTemplateBuilder {
+  private final Miner miner;
+  // Keyed by transaction hashID, in the order they arrived
+  private final Map<Hash256, Transaction> pending = new LinkedHashMap<>();
+
+  public BlockTemplateBuilder(Miner miner) {
+    this.miner = miner;
+  }
+
+  // Returns false if the transaction is already pending
+  public synchronized boolean addPendingTransaction(Transaction ts) {
+    if (ts == null) {
+      return false;
+    }
+    return pending.putIfAbsent(ts.getHashID(), ts) == null;
+  }
+
+  public synchronized void addPendingTransactions(Collection<Transaction> transactions) {
+    for (Transaction ts : transactions) {
+      addPendingTransaction(ts);
+    }
+  }
+
+  public synchronized int getNumberOfPendingTransactions() {
+    return pending.size();
+  }
+
+  // Builds a block on the last block of the miner's local ledger
+  public Block build() {
+    return build(miner.getLocalLedger());
+  }
+
+  public Block build(Blockchain ledger) {
+    Block block = miner.createNewBlock(ledger);
+    for (Transaction ts : selectTransactions(ledger)) {
+      block.addTransaction(ts, miner.getPublicKey());
+    }
+    miner.generateRewardTransaction(block);
+    return block;
+  }
+
+  /**
+   * Chooses the pending transactions that can go into the next block of the ledger, highest fee
+   * first. Transactions which can never be added to the ledger are dropped from the pool.
+   */
+  synchronized List<Transaction> selectTransactions(Blockchain ledger) {
+    Set<Hash256> transactionsInLedger = new HashSet<>();
+    Set<Hash256> spentInLedger = new HashSet<>();
+    ledger.collectTransactionIDs(transactionsInLedger, spentInLedger);
+
+    List<Transaction> candidates = new ArrayList<>();
+    Iterator<Transaction> it = pending.values().iterator();
+    while (it.hasNext()) {
+      Transaction ts = it.next();
+      if (transactionsInLedger.contains(ts.getHashID())) {
+        it.remove();
+      } else if (spendsAnyOf(ts, spentInLedger)) {
+        System.out.println(
+            "WARNING: transaction ID=" + ts.getHashID() + " spends UTXOs that are already spent.");
+        it.remove();
+      } else if (!ts.verifySignature()) {
+        System.out.println(
+            "WARNING: transaction ID="
+                + ts.getHashID()
+                + " from "
+                + UtilityMethods.getKeyString(ts.getSender())
+                + " is invalid. It has been tampered.");
+        it.remove();
+      } else {
+        candidates.add(ts);
+      }
+    }
+    // the sort is stable, so transactions paying the same fee keep their arrival order
+    candidates.sort(Comparator.comparingDouble(BlockTemplateBuilder::fee).reversed());
+
+    List<Transaction> selected = new ArrayList<>();
+    Set<Hash256> spentInBlock = new HashSet<>();
+    for (Transaction ts : candidates) {
+      if (selected.size() >= Block.TRANSACTION_UPPER_LIMIT) {
+        break;
+      }
+      // of two transactions spending the same UTXO, only the first one can go into the block
+      if (spendsAnyOf(ts, spentInBlock)) {
+        continue;
+      }
+      for (int i = 0; i < ts.getNumberOfInputsUTXOs(); i++) {
+        spentInBlock.add(ts.getInputUTXO(i).getHashID());
+      }
+      selected.add(ts);
+    }
+    return selected;
+  }
+
+  private static boolean spendsAnyOf(Transaction ts, Set<Hash256> utxoIDs) {
+    for (int i = 0; i < ts.getNumberOfInputsUTXOs(); i++) {
+      if (utxoIDs.contains(ts.getInputUTXO(i).getHashID())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // What the miner is paid for including the transaction: whatever the inputs do not pay out
+  private static double fee(Transaction ts) {
+    double fee = 0;
+    for (int i = 0; i < ts.getNumberOfInputsUTXOs(); i++) {
+      fee += ts.getInputUTXO(i).getFundsTransferred();
+    }
+    for (int i = 0; i < ts.getNumberOfOutputUTXOs(); i++) {
+      fee -= ts.getOutputUTXO(i).getFundsTransferred();
+    }
+    return fee;
+  }
+}
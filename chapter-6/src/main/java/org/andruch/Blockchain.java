@@ -3,40 +3,81 @@ package org.andruch;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
 
 public class Blockchain implements Serializable {
   @Serial private static final long serialVersionUID = 1L;
 
   public static final double MINING_REWARD = 100.0;
+  public static final long DEFAULT_TARGET_BLOCK_INTERVAL = 5000;
+  // The difficulty level is retargeted from the timestamps of this many last blocks
+  public static final int RETARGET_WINDOW = 10;
+  // Every bit doubles the work, so never move by more than 4x from one block to the next
+  public static final int MAX_DIFFICULTY_ADJUSTMENT = 2;
+  public static final int MIN_DIFFICULTY_LEVEL = 1;
+  public static final int MAX_DIFFICULTY_LEVEL = 256;
+  // The difficulty is retargeted from the timestamps the miners choose, so a block may not be
+  // stamped more than this many milliseconds ahead of the clock of the node checking it
+  public static final long MAX_FUTURE_BLOCK_TIME = 2 * 60 * 1000;
+
   private LedgerList<Block> blockchain;
+  // How many milliseconds should pass between two blocks
+  @Getter private final long targetBlockInterval;
+  // Every block and transaction of the chain must be signed with keys of this scheme
+  @Getter private final SignatureScheme signatureScheme;
 
+  // The chain uses the signature scheme of the genesis miner's key
   public Blockchain(Block genesisBlock) {
+    this(genesisBlock, DEFAULT_TARGET_BLOCK_INTERVAL);
+  }
+
+  public Blockchain(Block genesisBlock, long targetBlockInterval) {
+    this(genesisBlock, targetBlockInterval, SignatureScheme.of(genesisBlock.getCreator()));
+  }
+
+  public Blockchain(Block genesisBlock, long targetBlockInterval, SignatureScheme scheme) {
+    if (!scheme.owns(genesisBlock.getCreator())) {
+      throw new IllegalArgumentException("the genesis block is not signed with " + scheme);
+    }
     this.blockchain = new LedgerList<>();
     this.blockchain.add(genesisBlock);
+    this.targetBlockInterval = targetBlockInterval;
+    this.signatureScheme = scheme;
   }
 
   public static boolean validateBlockchain(Blockchain ledger) {
     int size = ledger.size();
     for (int i = size - 1; i > 0; i--) {
       Block currentBlock = ledger.getBlock(i);
-      boolean b = currentBlock.verifySignature(currentBlock.getCreator());
+      boolean b =
+          ledger.getSignatureScheme().owns(currentBlock.getCreator())
+              && currentBlock.verifySignature(currentBlock.getCreator());
       if (!b) {
         System.out.println("validateBlockChain(): block " + (i + 1) + "  signature is invalid.");
         return false;
       }
       b =
-          UtilityMethods.hashMeetsDifficultyLevel(
-                  currentBlock.getHashID(), currentBlock.getDifficultyLevel())
-              && currentBlock.computeHashID().equals(currentBlock.getHashID());
+          Hash256.of(currentBlock.computeHash()).equals(currentBlock.getHashID())
+              && currentBlock.getHashID().meetsDifficultyLevel(currentBlock.getDifficultyLevel());
       if (!b) {
         System.out.println("validateBlockChain():  block  " + (i + 1) + "  its hashing is bad");
         return false;
       }
+      b =
+          currentBlock.getDifficultyLevel()
+              == requiredDifficultyLevel(ledger.blockchain, i, ledger.targetBlockInterval);
+      if (!b) {
+        System.out.println(
+            "validateBlockChain():  block  " + (i + 1) + "  has the wrong difficulty level");
+        return false;
+      }
       Block previousBlock = ledger.getBlock(i - 1);
       b = currentBlock.getPreviousBlockHashID().equals(previousBlock.getHashID());
       if (!b) {
@@ -44,6 +85,10 @@ public class Blockchain implements Serializable {
             "validateBlockChain():  block  " + (i + 1) + "  invalid previous block hashID");
         return false;
       }
+      if (!hasValidTimestamp(currentBlock, previousBlock)) {
+        System.out.println("validateBlockChain():  block  " + (i + 1) + "  has a bad timestamp");
+        return false;
+      }
     }
     Block genesisBlock = ledger.getGenesisBlock();
     // confirm the genesis is signed
@@ -54,9 +99,8 @@ public class Blockchain implements Serializable {
     }
 
     b2 =
-        UtilityMethods.hashMeetsDifficultyLevel(
-                genesisBlock.getHashID(), genesisBlock.getDifficultyLevel())
-            && genesisBlock.computeHashID().equals(genesisBlock.getHashID());
+        Hash256.of(genesisBlock.computeHash()).equals(genesisBlock.getHashID())
+            && genesisBlock.getHashID().meetsDifficultyLevel(genesisBlock.getDifficultyLevel());
     if (!b2) {
       System.out.println("validateBlockChain(): gensis block is hashing is bad");
       return false;
@@ -64,6 +108,92 @@ public class Blockchain implements Serializable {
     return true;
   }
 
+  /**
+   * The difficulty level the next block must have. It is retargeted from the average time between
+   * the last blocks: if blocks come twice as fast as the target interval, one more bit is required.
+   */
+  public synchronized int getNextDifficultyLevel() {
+    return requiredDifficultyLevel(this.blockchain, this.size(), this.targetBlockInterval);
+  }
+
+  // Whether the block is stamped later than its parent and not too far in the future
+  static boolean hasValidTimestamp(Block block, Block previousBlock) {
+    return block.getTimestamp() > previousBlock.getTimestamp()
+        && block.getTimestamp() <= UtilityMethods.getTimeStamp() + MAX_FUTURE_BLOCK_TIME;
+  }
+
+  /**
+   * The expected number of hashes spent on the chain, 2^level per block. Wallets adopt the chain
+   * with the most work rather than the longest one: a long chain of easy blocks is cheap to make.
+   */
+  public synchronized BigInteger getTotalWork() {
+    BigInteger work = BigInteger.ZERO;
+    int size = this.blockchain.size();
+    for (int i = 0; i < size; i++) {
+      work =
+          work.add(BigInteger.ONE.shiftLeft(this.blockchain.findByIndex(i).getDifficultyLevel()));
+    }
+    return work;
+  }
+
+  // Whether the difficulty of both chains is retargeted the same way from the same genesis block
+  public boolean followsSameRules(Blockchain other) {
+    return getGenesisBlock().getHashID().equals(other.getGenesisBlock().getHashID())
+        && getSignatureScheme() == other.getSignatureScheme()
+        && targetBlockInterval == other.targetBlockInterval;
+  }
+
+  public int getCurrentDifficultyLevel() {
+    return getLastBlock().getDifficultyLevel();
+  }
+
+  // The difficulty level of the block at the given index, derived from the blocks before it
+  private static int requiredDifficultyLevel(
+      LedgerList<Block> chain, int index, long targetBlockInterval) {
+    Block last = chain.findByIndex(index - 1);
+    int first = Math.max(0, index - 1 - RETARGET_WINDOW);
+    int intervals = index - 1 - first;
+    if (intervals == 0) {
+      // only the genesis block, nothing to measure yet
+      return last.getDifficultyLevel();
+    }
+    long elapsed = last.getTimestamp() - chain.findByIndex(first).getTimestamp();
+    double averageInterval = Math.max(1.0, (double) elapsed / intervals);
+    long adjustment = Math.round(Math.log(targetBlockInterval / averageInterval) / Math.log(2));
+    adjustment =
+        Math.max(-MAX_DIFFICULTY_ADJUSTMENT, Math.min(MAX_DIFFICULTY_ADJUSTMENT, adjustment));
+    long level = last.getDifficultyLevel() + adjustment;
+    return (int) Math.max(MIN_DIFFICULTY_LEVEL, Math.min(MAX_DIFFICULTY_LEVEL, level));
+  }
+
+  // Whether the creator of the block, and the senders and output receivers of all its transactions,
+  // use the scheme of this chain. A UTXO paid to a key of another scheme could never be spent here.
+  boolean usesSignatureScheme(Block block) {
+    SignatureScheme scheme = getSignatureScheme();
+    if (!scheme.owns(block.getCreator())) {
+      return false;
+    }
+    for (int i = 0; i < block.getNumberOfTransactions(); i++) {
+      if (!usesSignatureScheme(scheme, block.getTransaction(i))) {
+        return false;
+      }
+    }
+    Transaction reward = block.getRewardTransaction();
+    return reward == null || usesSignatureScheme(scheme, reward);
+  }
+
+  private static boolean usesSignatureScheme(SignatureScheme scheme, Transaction t) {
+    if (!scheme.owns(t.getSender())) {
+      return false;
+    }
+    for (int i = 0; i < t.getNumberOfOutputUTXOs(); i++) {
+      if (!scheme.owns(t.getOutputUTXO(i).getReceiver())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public PublicKey getGenesisMiner() {
     return this.getGenesisBlock().getCreator();
   }
@@ -84,21 +214,23 @@ public class Blockchain implements Serializable {
     return blockchain.getFirst();
   }
 
-  public Block getLastBlock() {
+  public synchronized Block getLastBlock() {
     return blockchain.getLast();
   }
 
-  public int size() {
+  public synchronized int size() {
     return blockchain.size();
   }
 
-  public Block getBlock(int index) {
+  public synchronized Block getBlock(int index) {
     return blockchain.findByIndex(index);
   }
 
-  protected boolean transactionExists(Transaction T) {
+  // The genesis block is searched too, as by collectTransactionIDs(): block verification and the
+  // block template builder must find the same duplicates
+  protected synchronized boolean transactionExists(Transaction T) {
     int size = this.blockchain.size();
-    for (int i = size - 1; i > 0; i--) {
+    for (int i = size - 1; i >= 0; i--) {
       Block b = this.blockchain.findByIndex(i);
       int bs = b.getNumberOfTransactions();
       for (int j = 0; j < bs; j++) {
@@ -111,6 +243,24 @@ public class Blockchain implements Serializable {
     return false;
   }
 
+  // Collects, in a single scan of the ledger, the hashIDs of all its transactions and of all the
+  // UTXOs they spend
+  synchronized void collectTransactionIDs(Set<Hash256> transactionIDs, Set<Hash256> spentUTXOIDs) {
+    int size = this.blockchain.size();
+    for (int i = 0; i < size; i++) {
+      Block b = this.blockchain.findByIndex(i);
+      int bs = b.getNumberOfTransactions();
+      for (int j = 0; j < bs; j++) {
+        Transaction t = b.getTransaction(j);
+        transactionIDs.add(t.getHashID());
+        int n = t.getNumberOfInputsUTXOs();
+        for (int x = 0; x < n; x++) {
+          spentUTXOIDs.add(t.getInputUTXO(x).getHashID());
+        }
+      }
+    }
+  }
+
   public double findRelatedUTXOs(
       PublicKey key,
       List<UTXO> all,
@@ -119,7 +269,8 @@ public class Blockchain implements Serializable {
       List<Transaction> sentTransactions,
       List<UTXO> rewards) {
     double gain = 0.0, spending = 0.0;
-    Map<String, UTXO> map = new HashMap<>();
+    AccountId account = AccountId.of(key);
+    Map<Hash256, UTXO> map = new HashMap<>();
     int limit = size();
     for (int a = 0; a < limit; a++) {
       Block block = blockchain.findByIndex(a);
@@ -127,7 +278,7 @@ public class Blockchain implements Serializable {
       for (int i = 0; i < size; i++) {
         Transaction t = block.getTransaction(i);
         int N;
-        if (a != 0 && t.getSender().equals(key)) {
+        if (a != 0 && t.getSenderId() == account) {
           N = t.getNumberOfInputsUTXOs();
           for (int x = 0; x < N; x++) {
             UTXO in = t.getInputUTXO(x);
@@ -140,20 +291,20 @@ public class Blockchain implements Serializable {
         N = t.getNumberOfOutputUTXOs();
         for (int x = 0; x < N; x++) {
           UTXO ut = t.getOutputUTXO(x);
-          if (ut.getReceiver().equals(key)) {
+          if (ut.getReceiverId() == account) {
             all.add(ut);
             gain += ut.getFundsTransferred();
           }
         }
       }
       // add reward transactions. The reward might be null since a miner might underpay himself
-      if (block.getCreator().equals(key)) {
+      if (block.getCreatorId() == account) {
         Transaction rt = block.getRewardTransaction();
         if (rt != null && rt.getNumberOfOutputUTXOs() > 0) {
           UTXO ux = rt.getOutputUTXO(0);
           // double check again, so a miner can only reward himself
           // if he rewards others, this reward is not counted
-          if (ux.getReceiver().equals(key)) {
+          if (ux.getReceiverId() == account) {
             rewards.add(ux);
             all.add(ux);
             gain += ux.getFundsTransferred();
@@ -208,7 +359,10 @@ public class Blockchain implements Serializable {
   }
 
   // Private constructor for copying purposes
-  private Blockchain(LedgerList<Block> chain) {
+  private Blockchain(
+      LedgerList<Block> chain, long targetBlockInterval, SignatureScheme signatureScheme) {
+    this.targetBlockInterval = targetBlockInterval;
+    this.signatureScheme = signatureScheme;
     this.blockchain = new LedgerList<>();
     int size = chain.size();
     for (int i = 0; i < size; i++) {
@@ -218,6 +372,6 @@ public class Blockchain implements Serializable {
 
   // Shallow copy. The blocks and their order are preserved.
   public synchronized Blockchain copy_NotDeepCopy() {
-    return new Blockchain(this.blockchain);
+    return new Blockchain(this.blockchain, this.targetBlockInterval, this.signatureScheme);
   }
 }
@@ -16,9 +16,11 @@ public class BlockchainPlatform {
     Miner genesisMiner = new Miner("genesis", "genesis");
     users.add(genesisMiner);
     // create genesis block
-    Block genesisBlock = new Block("0", difficultLevel, genesisMiner.getPublicKey());
-    UTXO u1 = new UTXO("0", genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10001.0);
-    UTXO u2 = new UTXO("0", genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10000.0);
+    Block genesisBlock = new Block(Hash256.ZERO, difficultLevel, genesisMiner.getPublicKey());
+    UTXO u1 =
+        new UTXO(Hash256.ZERO, genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10001.0);
+    UTXO u2 =
+        new UTXO(Hash256.ZERO, genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10000.0);
     ArrayList<UTXO> inputs = new ArrayList<UTXO>();
     inputs.add(u1);
     inputs.add(u2);
@@ -40,7 +42,7 @@ public class BlockchainPlatform {
     b = genesisMiner.mineBlock(genesisBlock);
     if (b) {
       System.out.println("genesis block is successfully mined. HashID:");
-      System.out.println(genesisBlock.getHashID());
+      System.out.println(genesisBlock.getHashID().toBinaryString());
     } else {
       System.out.println("failed to mine genesis block. System exit");
       System.exit(1);
@@ -63,8 +65,8 @@ public class BlockchainPlatform {
     A.setLocalLedger(ledger.copy_NotDeepCopy());
     B.setLocalLedger(ledger.copy_NotDeepCopy());
     C.setLocalLedger(ledger.copy_NotDeepCopy());
-    Block b2 = A.createNewBlock(A.getLocalLedger(), difficultLevel);
-    System.out.println("Block b2 created by A");
+    Block b2 = A.createNewBlock(A.getLocalLedger());
+    System.out.println("Block b2 created by A, difficulty level " + b2.getDifficultyLevel());
     System.out.println("genesis miner sends B: 500+200, C: 300+100");
     PublicKey[] receiver = {B.getPublicKey(), B.getPublicKey(), C.getPublicKey(), C.getPublicKey()};
     double[] funds = {500, 200, 300, 100};
@@ -104,7 +106,8 @@ public class BlockchainPlatform {
                 + B.getCurrentBalance(ledger)
                 + C.getCurrentBalance(ledger)));
 
-    Block b3 = A.createNewBlock(ledger, difficultLevel);
+    Block b3 = A.createNewBlock(ledger);
+    System.out.println("Block b3 created by A, difficulty level " + b3.getDifficultyLevel());
     System.out.println("Again, genesis miner sends B: 500+200, C: 300+100");
     Transaction t2 = genesisMiner.transferFund(receiver, funds);
     // try to add t1 into b3 to check, it should fail
@@ -182,8 +185,8 @@ public class BlockchainPlatform {
     }
 
     System.out.println();
-    Block b4 = C.createNewBlock(ledger, difficultLevel);
-    System.out.println("C created block b4");
+    Block b4 = C.createNewBlock(ledger);
+    System.out.println("C created block b4, difficulty level " + b4.getDifficultyLevel());
 
     if (C.addTransaction(t5, b4)) {
       System.out.println("C added t5 into b4");
@@ -216,7 +219,7 @@ public class BlockchainPlatform {
     }
     if (C.mineBlock(b4)) {
       System.out.println("C mined b4, hashID:");
-      System.out.println(b4.getHashID());
+      System.out.println(b4.getHashID().toBinaryString());
       b = verifyBlock(A, b4, "b4");
       if (b) {
         System.out.println(
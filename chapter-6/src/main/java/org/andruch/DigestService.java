@@ -0,0 +1,81 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashing for transaction IDs, UTXO IDs, merkle nodes and block hashes. Looking up a
+ * MessageDigest with MessageDigest.getInstance() goes through the security providers and allocates
+ * a new digest every time, so every thread keeps its own digest and reuses it. Callers that already
+ * have the bytes to hash should pass them, in an array or a ByteBuffer, rather than a String which
+ * has to be copied into a new byte array first.
+ *
+ * <p>All the methods are thread-safe and can be called from parallel validation threads.
+ */
+public final class DigestService {
+  public static final int SHA256_LENGTH = 32;
+
+  private static final ThreadLocal<MessageDigest> SHA256 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+              throw new RuntimeException(e);
+            }
+          });
+
+  private DigestService() {}
+
+  public static byte[] sha256(byte[] data) {
+    return sha256(data, 0, data.length);
+  }
+
+  public static byte[] sha256(byte[] data, int offset, int length) {
+    MessageDigest md = SHA256.get();
+    md.update(data, offset, length);
+    return md.digest();
+  }
+
+  // Hashes the remaining bytes of the buffer, which is left at its limit
+  public static byte[] sha256(ByteBuffer data) {
+    MessageDigest md = SHA256.get();
+    md.update(data);
+    return md.digest();
+  }
+
+  /**
+   * Hashes the data into out[outOffset] to out[outOffset + 31], so hot loops do not allocate the 32
+   * bytes of every digest.
+   */
+  public static void sha256(byte[] data, int offset, int length, byte[] out, int outOffset) {
+    MessageDigest md = SHA256.get();
+    md.update(data, offset, length);
+    try {
+      md.digest(out, outOffset, SHA256_LENGTH);
+    } catch (DigestException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Same as above, with the prefix byte hashed before the data
+  public static void sha256(
+      byte prefix, byte[] data, int offset, int length, byte[] out, int outOffset) {
+    MessageDigest md = SHA256.get();
+    md.update(prefix);
+    md.update(data, offset, length);
+    try {
+      md.digest(out, outOffset, SHA256_LENGTH);
+    } catch (DigestException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Same digest as sha256(message.getBytes())
+  public static byte[] sha256(String message) {
+    return SHA256.get().digest(message.getBytes());
+  }
+}
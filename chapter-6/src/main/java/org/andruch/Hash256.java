@@ -0,0 +1,205 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Base64;
+
+/**
+ * A 32-byte SHA-256 digest, used as the identity of blocks, transactions and UTXOs. It is kept as
+ * four longs with a precomputed hashCode, so comparing two IDs or looking one up in a HashMap does
+ * not walk through a 44-character Base64 or a 256-character binary String. The String forms are
+ * only built for display.
+ */
+public final class Hash256 implements Serializable, Comparable<Hash256> {
+  @Serial private static final long serialVersionUID = 1L;
+
+  public static final int LENGTH = 32;
+  public static final int BASE64_LENGTH = 44;
+  public static final int BINARY_LENGTH = LENGTH * TextEncoding.BINARY_CHARS_PER_BYTE;
+
+  // The previous block hashID of a genesis block, and the parent of UTXOs created out of nothing
+  public static final Hash256 ZERO = new Hash256(0, 0, 0, 0);
+
+  // Big-endian, w0 holds the first 8 bytes of the digest
+  private final long w0, w1, w2, w3;
+  private final int hashCode;
+
+  private Hash256(long w0, long w1, long w2, long w3) {
+    this.w0 = w0;
+    this.w1 = w1;
+    this.w2 = w2;
+    this.w3 = w3;
+    // SHA-256 output is uniformly distributed, a few bits of it are as good as any mix
+    this.hashCode = (int) (w0 ^ (w0 >>> 32));
+  }
+
+  public static Hash256 of(byte[] digest) {
+    return of(digest, 0);
+  }
+
+  public static Hash256 of(byte[] digest, int offset) {
+    if (digest.length - offset < LENGTH) {
+      throw new IllegalArgumentException("a SHA-256 digest has " + LENGTH + " bytes");
+    }
+    return new Hash256(
+        readLong(digest, offset),
+        readLong(digest, offset + 8),
+        readLong(digest, offset + 16),
+        readLong(digest, offset + 24));
+  }
+
+  public static Hash256 fromBase64(String s) {
+    return of(Base64.getDecoder().decode(s));
+  }
+
+  // The inverse of toBinaryString()
+  public static Hash256 fromBinaryString(String s) {
+    return of(TextEncoding.fromBinaryString(s));
+  }
+
+  /**
+   * Converts a hashID of the time hashIDs were Strings into the same 32 bytes as a Hash256, for IDs
+   * kept outside the ledger: in files, logs or the records of other nodes. Transaction and UTXO IDs
+   * were the Base64 form of the digest, block IDs its 256-character binary form.
+   *
+   * <p>Only the IDs carry over. Objects serialized with String hashIDs cannot be read any more, and
+   * transactions and UTXOs now hash and sign a binary payload: one made again from the same fields
+   * gets a new ID, which is not the converted one.
+   */
+  public static Hash256 fromLegacyId(String id) {
+    if (id.length() == BASE64_LENGTH) {
+      return fromBase64(id);
+    }
+    if (id.length() == BINARY_LENGTH) {
+      return fromBinaryString(id);
+    }
+    throw new IllegalArgumentException("not a Base64 or binary hashID: " + id);
+  }
+
+  // SHA-256 of the bytes of the String
+  public static Hash256 sha256(String message) {
+    return of(DigestService.sha256(message));
+  }
+
+  public static Hash256 sha256(byte[] message) {
+    return of(DigestService.sha256(message));
+  }
+
+  private static long readLong(byte[] b, int offset) {
+    long v = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      v = v << Byte.SIZE | (b[offset + i] & 0xFF);
+    }
+    return v;
+  }
+
+  private static void writeLong(long v, byte[] b, int offset) {
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      b[offset + i] = (byte) v;
+      v >>>= Byte.SIZE;
+    }
+  }
+
+  public byte[] toBytes() {
+    byte[] b = new byte[LENGTH];
+    writeTo(b, 0);
+    return b;
+  }
+
+  public void writeTo(byte[] b, int offset) {
+    writeLong(w0, b, offset);
+    writeLong(w1, b, offset + 8);
+    writeLong(w2, b, offset + 16);
+    writeLong(w3, b, offset + 24);
+  }
+
+  public String toBase64() {
+    return Base64.getEncoder().encodeToString(toBytes());
+  }
+
+  /**
+   * Writes the 44 Base64 characters into out[offset] to out[offset + 43], straight from the four
+   * longs. The 256 bits make 42 full groups of 6 bits, then 4 bits padded with zeros and a '='.
+   */
+  public void writeBase64(char[] out, int offset) {
+    // the bits not written yet, never more than 5 + 32 of them
+    long bits = 0;
+    int count = 0;
+    for (int i = 0; i < 4; i++) {
+      long word = i == 0 ? w0 : i == 1 ? w1 : i == 2 ? w2 : w3;
+      for (int half = 32; half >= 0; half -= 32) {
+        bits = (bits << 32) | ((word >>> half) & 0xFFFFFFFFL);
+        count += 32;
+        while (count >= 6) {
+          count -= 6;
+          out[offset++] = TextEncoding.BASE64[(int) (bits >>> count) & 0x3F];
+        }
+      }
+    }
+    out[offset++] = TextEncoding.BASE64[(int) (bits << (6 - count)) & 0x3F];
+    out[offset] = '=';
+  }
+
+  // The 256 '0'/'1' characters block hashIDs used to be, see UtilityMethods.toBinaryString()
+  public String toBinaryString() {
+    char[] out = new char[BINARY_LENGTH];
+    writeBinary(out, 0);
+    return new String(out);
+  }
+
+  public void writeBinary(char[] out, int offset) {
+    offset += TextEncoding.writeBinary(w0, out, offset);
+    offset += TextEncoding.writeBinary(w1, out, offset);
+    offset += TextEncoding.writeBinary(w2, out, offset);
+    TextEncoding.writeBinary(w3, out, offset);
+  }
+
+  // The number of '0' characters toBinaryString() starts with, the proof of work of a block hashID.
+  // Every byte is shifted by 128 in that form, so this is not the leading zero bits of the digest.
+  public int countLeadingZeroBinaryChars() {
+    if (w0 != 0x8080808080808080L) return TextEncoding.countLeadingZeroBinaryChars(w0);
+    if (w1 != 0x8080808080808080L) return 64 + TextEncoding.countLeadingZeroBinaryChars(w1);
+    if (w2 != 0x8080808080808080L) return 128 + TextEncoding.countLeadingZeroBinaryChars(w2);
+    return 192 + TextEncoding.countLeadingZeroBinaryChars(w3);
+  }
+
+  public boolean meetsDifficultyLevel(int difficultyLevel) {
+    return countLeadingZeroBinaryChars() >= difficultyLevel;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj instanceof Hash256 other) {
+      return hashCode == other.hashCode
+          && w0 == other.w0
+          && w1 == other.w1
+          && w2 == other.w2
+          && w3 == other.w3;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  // Orders the digests as unsigned big-endian numbers
+  @Override
+  public int compareTo(Hash256 other) {
+    int c = Long.compareUnsigned(w0, other.w0);
+    if (c == 0) c = Long.compareUnsigned(w1, other.w1);
+    if (c == 0) c = Long.compareUnsigned(w2, other.w2);
+    if (c == 0) c = Long.compareUnsigned(w3, other.w3);
+    return c;
+  }
+
+  @Override
+  public String toString() {
+    return toBase64();
+  }
+}
@@ -0,0 +1,88 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the merkle root of a list of leaves that only grows, such as the transactions of a block
+ * being assembled, without rebuilding the tree on every append. Leaves and inner nodes are hashed
+ * with the prefixes MerkleTree uses. It keeps the frontier: the root of every perfect subtree not
+ * yet joined with another one, at most one per height, like the bits of the leaf count. Appending a
+ * leaf joins the subtrees of equal height it completes, O(log n) hashes and usually one or two. The
+ * root is the frontier folded from the smallest subtree to the largest, each larger one on the
+ * left, which is the root MerkleTree gives for the same leaves.
+ *
+ * <p>An accumulator is not thread-safe for appends, but the root can be read by several threads as
+ * long as nothing is appended meanwhile.
+ */
+public final class MerkleAccumulator {
+  // The root of the perfect subtree of 2^h leaves at h * 32, present when bit h of leafCount is set
+  private byte[] frontier = new byte[Hash256.LENGTH * 8];
+  private long leafCount;
+
+  public void append(Hash256 leaf) {
+    byte[] pair = leafPair(leaf);
+    int height = 0;
+    // join the new subtree with the one of the same height, as a carry in a binary addition
+    while ((leafCount & (1L << height)) != 0) {
+      joinWith(height, pair);
+      height++;
+    }
+    if (frontier.length < (height + 1) * Hash256.LENGTH) {
+      frontier = Arrays.copyOf(frontier, Math.min(64, height * 2) * Hash256.LENGTH);
+    }
+    System.arraycopy(pair, Hash256.LENGTH, frontier, height * Hash256.LENGTH, Hash256.LENGTH);
+    leafCount++;
+  }
+
+  public long getLeafCount() {
+    return leafCount;
+  }
+
+  public Hash256 getRoot() {
+    if (leafCount == 0) {
+      return Hash256.ZERO;
+    }
+    int lowest = Long.numberOfTrailingZeros(leafCount);
+    byte[] pair = new byte[2 * Hash256.LENGTH];
+    System.arraycopy(frontier, lowest * Hash256.LENGTH, pair, Hash256.LENGTH, Hash256.LENGTH);
+    return fold(pair, lowest);
+  }
+
+  /** The root there would be with lastLeaf appended, without appending it. */
+  public Hash256 getRoot(Hash256 lastLeaf) {
+    byte[] pair = leafPair(lastLeaf);
+    int height = 0;
+    while ((leafCount & (1L << height)) != 0) {
+      joinWith(height, pair);
+      height++;
+    }
+    return fold(pair, height);
+  }
+
+  // Folds the subtrees above height into the node in the right half of pair
+  private Hash256 fold(byte[] pair, int height) {
+    for (int h = height + 1; h < Long.SIZE; h++) {
+      if ((leafCount & (1L << h)) != 0) {
+        joinWith(h, pair);
+      }
+    }
+    return Hash256.of(pair, Hash256.LENGTH);
+  }
+
+  // A buffer of two nodes with the hash of the leaf in the right half
+  private static byte[] leafPair(Hash256 leaf) {
+    byte[] pair = new byte[2 * Hash256.LENGTH];
+    leaf.writeTo(pair, Hash256.LENGTH);
+    DigestService.sha256(
+        MerkleTree.LEAF_PREFIX, pair, Hash256.LENGTH, Hash256.LENGTH, pair, Hash256.LENGTH);
+    return pair;
+  }
+
+  // Replaces the node in the right half of pair with its parent, the frontier subtree of the given
+  // height on its left
+  private void joinWith(int height, byte[] pair) {
+    System.arraycopy(frontier, height * Hash256.LENGTH, pair, 0, Hash256.LENGTH);
+    DigestService.sha256(MerkleTree.NODE_PREFIX, pair, 0, pair.length, pair, Hash256.LENGTH);
+  }
+}
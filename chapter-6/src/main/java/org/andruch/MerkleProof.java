@@ -0,0 +1,78 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import lombok.Getter;
+
+/**
+ * Proves that a transaction is part of a block with only the block's merkle root: the hashID of the
+ * transaction, its position among the leaves of the merkle tree and the sibling of every node on
+ * the path up to the root. The root is recomputed from the leaf hash of the transaction with one
+ * hash per level, so a wallet that only keeps block headers can confirm a payment without the
+ * transactions of the block. Leaves and inner nodes are hashed with different prefixes, see
+ * MerkleTree, so an inner node cannot be proven as a transaction with a smaller leaf count.
+ *
+ * <p>The siblings are not marked left or right: the position and the number of leaves decide it,
+ * and which levels carry their node up without a sibling, exactly as MerkleTree builds them.
+ */
+@Getter
+public final class MerkleProof implements Serializable {
+  @Serial private static final long serialVersionUID = 1L;
+
+  private final Hash256 transactionID;
+  private final int index;
+  private final int leafCount;
+  private final List<Hash256> siblings;
+
+  MerkleProof(Hash256 transactionID, int index, int leafCount, List<Hash256> siblings) {
+    this.transactionID = transactionID;
+    this.index = index;
+    this.leafCount = leafCount;
+    this.siblings = Collections.unmodifiableList(siblings);
+  }
+
+  /**
+   * @return True if this proof puts the transaction under the given merkle root, such as the one of
+   *     a block header.
+   */
+  public boolean verify(Hash256 transactionID, Hash256 merkleRoot) {
+    if (!this.transactionID.equals(transactionID)) {
+      return false;
+    }
+    Hash256 root = computeRoot();
+    return root != null && root.equals(merkleRoot);
+  }
+
+  // The root the path leads to, or null if the siblings do not fit the position and leaf count
+  Hash256 computeRoot() {
+    if (index < 0 || index >= leafCount) {
+      return null;
+    }
+    byte[] pair = new byte[2 * Hash256.LENGTH];
+    byte[] node = transactionID.toBytes();
+    DigestService.sha256(MerkleTree.LEAF_PREFIX, node, 0, node.length, node, 0);
+    int used = 0;
+    for (int position = index, size = leafCount; size > 1; position /= 2, size = (size + 1) / 2) {
+      if (position % 2 == 1 || position + 1 < size) {
+        if (used == siblings.size()) {
+          return null;
+        }
+        Hash256 sibling = siblings.get(used++);
+        // a node at an odd position is the right child of its parent
+        int nodeOffset = position % 2 == 1 ? Hash256.LENGTH : 0;
+        System.arraycopy(node, 0, pair, nodeOffset, Hash256.LENGTH);
+        sibling.writeTo(pair, Hash256.LENGTH - nodeOffset);
+        DigestService.sha256(MerkleTree.NODE_PREFIX, pair, 0, pair.length, node, 0);
+      }
+      // else the last node of a level with an odd size, carried up as it is
+    }
+    return used == siblings.size() ? Hash256.of(node) : null;
+  }
+
+  public int size() {
+    return siblings.size();
+  }
+}
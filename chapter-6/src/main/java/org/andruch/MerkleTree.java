@@ -0,0 +1,236 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A binary merkle tree over 32-byte digests, such as the hashIDs of a block's transactions. Every
+ * leaf is first hashed as SHA-256(0x00 || leaf), then the tree is built bottom-up, one level at a
+ * time: every pair of nodes is hashed into its parent as SHA-256(0x01 || left || right), and the
+ * last node of a level with an odd number of nodes is carried up to the next level unchanged. The
+ * tree of no leaves has the root Hash256.ZERO.
+ *
+ * <p>The two prefixes keep leaves and inner nodes apart. The block header does not commit to the
+ * number of transactions, so without them a proof over fewer leaves could present an inner node,
+ * the hash of two transaction IDs, as a transaction ID of the block.
+ *
+ * <p>All the levels are kept in one byte array, leaves first and the root last, so no digest is
+ * ever turned into a String or an object while the tree is built. When only the root is needed,
+ * computeRoot() reduces the leaves in place in a buffer every thread reuses, and keeps nothing.
+ *
+ * <p>Carrying odd nodes up makes the tree of n leaves the tree of the first 2^k leaves, the largest
+ * power of two below n, joined with the tree of the others. Very large trees are split that way
+ * into subtrees hashed in parallel on the common ForkJoin pool, and give the same root.
+ */
+public final class MerkleTree {
+  // The levels of the tree one after another, 32 bytes per node
+  private final byte[] nodes;
+  // Where each level starts in nodes, and how many nodes it has; level 0 holds the leaves, level 1
+  // their hashes
+  private final int[] levelOffsets;
+  private final int[] levelSizes;
+
+  // Below this many leaves the root is computed on the caller's thread, the ForkJoin tasks would
+  // cost more than they save
+  public static final int PARALLEL_THRESHOLD = 4096;
+
+  // Hashed first into leaves and into inner nodes
+  static final byte LEAF_PREFIX = 0x00;
+  static final byte NODE_PREFIX = 0x01;
+
+  private static final ThreadLocal<byte[]> SCRATCH =
+      ThreadLocal.withInitial(() -> new byte[Hash256.LENGTH * 128]);
+
+  private MerkleTree(byte[] nodes, int[] levelOffsets, int[] levelSizes) {
+    this.nodes = nodes;
+    this.levelOffsets = levelOffsets;
+    this.levelSizes = levelSizes;
+  }
+
+  public static MerkleTree build(List<Hash256> leaves) {
+    int levels = levelCount(leaves.size());
+    int[] levelOffsets = new int[levels];
+    int[] levelSizes = new int[levels];
+    int total = 0;
+    for (int level = 0, size = leaves.size(); level < levels; level++) {
+      levelOffsets[level] = total * Hash256.LENGTH;
+      levelSizes[level] = size;
+      total += size;
+      // the leaf hashes are as many as the leaves
+      if (level > 0) {
+        size = (size + 1) / 2;
+      }
+    }
+    byte[] nodes = new byte[total * Hash256.LENGTH];
+    for (int i = 0; i < leaves.size(); i++) {
+      leaves.get(i).writeTo(nodes, i * Hash256.LENGTH);
+    }
+    if (levels > 1) {
+      hashLeaves(nodes, 0, leaves.size(), nodes, levelOffsets[1]);
+    }
+    for (int level = 2; level < levels; level++) {
+      hashLevel(nodes, levelOffsets[level - 1], levelSizes[level - 1], nodes, levelOffsets[level]);
+    }
+    return new MerkleTree(nodes, levelOffsets, levelSizes);
+  }
+
+  /** The root of the tree over the leaves, without keeping the tree. */
+  public static Hash256 computeRoot(List<Hash256> leaves) {
+    return computeRoot(leaves, PARALLEL_THRESHOLD);
+  }
+
+  /**
+   * Same as above, with subtrees of more than parallelThreshold leaves split in two and hashed in
+   * parallel.
+   */
+  public static Hash256 computeRoot(List<Hash256> leaves, int parallelThreshold) {
+    if (leaves.size() <= Math.max(1, parallelThreshold)) {
+      return computeRootSequentially(leaves);
+    }
+    return new RootTask(leaves, Math.max(1, parallelThreshold)).invoke();
+  }
+
+  private static Hash256 computeRootSequentially(List<Hash256> leaves) {
+    int size = leaves.size();
+    if (size == 0) {
+      return Hash256.ZERO;
+    }
+    byte[] buffer = SCRATCH.get();
+    if (buffer.length < size * Hash256.LENGTH) {
+      buffer = new byte[Integer.highestOneBit(size - 1) * 2 * Hash256.LENGTH];
+      SCRATCH.set(buffer);
+    }
+    for (int i = 0; i < size; i++) {
+      leaves.get(i).writeTo(buffer, i * Hash256.LENGTH);
+    }
+    hashLeaves(buffer, 0, size, buffer, 0);
+    // every level overwrites the front of the one below it, which is no longer needed
+    while (size > 1) {
+      size = hashLevel(buffer, 0, size, buffer, 0);
+    }
+    return Hash256.of(buffer, 0);
+  }
+
+  // Hashes size leaves into their leaf hashes, which may overwrite them
+  private static void hashLeaves(byte[] in, int inOffset, int size, byte[] out, int outOffset) {
+    for (int i = 0; i < size; i++) {
+      DigestService.sha256(
+          LEAF_PREFIX,
+          in,
+          inOffset + i * Hash256.LENGTH,
+          Hash256.LENGTH,
+          out,
+          outOffset + i * Hash256.LENGTH);
+    }
+  }
+
+  // Hashes a level of size nodes into the level above it and returns the size of that level. The
+  // level above may overwrite the level below it, since parent i is written after children 2i and
+  // 2i + 1 have been read.
+  private static int hashLevel(byte[] in, int inOffset, int size, byte[] out, int outOffset) {
+    int parents = size / 2;
+    for (int i = 0; i < parents; i++) {
+      DigestService.sha256(
+          NODE_PREFIX,
+          in,
+          inOffset + 2 * i * Hash256.LENGTH,
+          2 * Hash256.LENGTH,
+          out,
+          outOffset + i * Hash256.LENGTH);
+    }
+    if (size % 2 == 1) {
+      System.arraycopy(
+          in,
+          inOffset + (size - 1) * Hash256.LENGTH,
+          out,
+          outOffset + parents * Hash256.LENGTH,
+          Hash256.LENGTH);
+      return parents + 1;
+    }
+    return parents;
+  }
+
+  // The root of a subtree, itself split in two until it has no more than threshold leaves
+  private static class RootTask extends RecursiveTask<Hash256> {
+    private final List<Hash256> leaves;
+    private final int threshold;
+
+    RootTask(List<Hash256> leaves, int threshold) {
+      this.leaves = leaves;
+      this.threshold = threshold;
+    }
+
+    @Override
+    protected Hash256 compute() {
+      if (leaves.size() <= threshold) {
+        return computeRootSequentially(leaves);
+      }
+      // the largest power of two below the number of leaves
+      int left = Integer.highestOneBit(leaves.size() - 1);
+      RootTask right = new RootTask(leaves.subList(left, leaves.size()), threshold);
+      right.fork();
+      Hash256 leftRoot = new RootTask(leaves.subList(0, left), threshold).compute();
+      Hash256 rightRoot = right.join();
+      byte[] pair = new byte[2 * Hash256.LENGTH];
+      leftRoot.writeTo(pair, 0);
+      rightRoot.writeTo(pair, Hash256.LENGTH);
+      DigestService.sha256(NODE_PREFIX, pair, 0, pair.length, pair, 0);
+      return Hash256.of(pair);
+    }
+  }
+
+  // The leaves, then 1 level for 1 leaf hash and one more every time the number of leaves doubles
+  private static int levelCount(int leaves) {
+    if (leaves == 0) {
+      return 1;
+    }
+    return leaves == 1 ? 2 : Integer.SIZE - Integer.numberOfLeadingZeros(leaves - 1) + 2;
+  }
+
+  public Hash256 getRoot() {
+    if (getLeafCount() == 0) {
+      return Hash256.ZERO;
+    }
+    return getNode(getLevelCount() - 1, 0);
+  }
+
+  public int getLeafCount() {
+    return levelSizes[0];
+  }
+
+  public int getLevelCount() {
+    return levelSizes.length;
+  }
+
+  public int getLevelSize(int level) {
+    return levelSizes[level];
+  }
+
+  /** The siblings on the path from a leaf up to the root, see MerkleProof. */
+  public MerkleProof getProof(int leafIndex) {
+    if (leafIndex < 0 || leafIndex >= getLeafCount()) {
+      throw new IndexOutOfBoundsException("leaf " + leafIndex + " of " + getLeafCount());
+    }
+    List<Hash256> siblings = new ArrayList<>(getLevelCount() - 2);
+    int position = leafIndex;
+    // the siblings are leaf hashes and inner nodes, never the leaves themselves
+    for (int level = 1; level < getLevelCount() - 1; level++, position /= 2) {
+      if (position % 2 == 1) {
+        siblings.add(getNode(level, position - 1));
+      } else if (position + 1 < levelSizes[level]) {
+        siblings.add(getNode(level, position + 1));
+      }
+    }
+    return new MerkleProof(getNode(0, leafIndex), leafIndex, getLeafCount(), siblings);
+  }
+
+  public Hash256 getNode(int level, int index) {
+    if (index < 0 || index >= levelSizes[level]) {
+      throw new IndexOutOfBoundsException(
+          "node " + index + " of level " + level + " of " + levelSizes[level]);
+    }
+    return Hash256.of(nodes, levelOffsets[level] + index * Hash256.LENGTH);
+  }
+}
@@ -1,22 +1,149 @@
 /* Copyright © 2023 Andreas Börjesson AB */
 package org.andruch;
 
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Setter;
+
 public class Miner extends Wallet {
+  // Runs the background mining tasks. The hashing itself is done by each miner's mining engine.
+  private static final ExecutorService MINING_COORDINATORS =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, "mining-coordinator");
+            t.setDaemon(true);
+            return t;
+          });
+
+  // Searches the nonce space on all cores unless told otherwise. Created the first time this miner
+  // mines, so that miners which never call mineBlock(), such as those run by a MiningScheduler, do
+  // not start any thread.
+  @Setter private MiningEngine miningEngine;
+
+  private final Set<MiningTask> activeTasks = ConcurrentHashMap.newKeySet();
+
+  // What happened to the templates abandoned because a competing block extended the ledger first
+  private final AtomicLong abandonedTemplates = new AtomicLong();
+  private final AtomicLong staleHashes = new AtomicLong();
+  private final AtomicLong staleHashingNanos = new AtomicLong();
+  private final AtomicLong stopLatencyNanos = new AtomicLong();
+
   public Miner(String minerName, String password) {
     super(minerName, password);
   }
 
+  public Miner(String minerName, String password, SignatureScheme scheme) {
+    super(minerName, password, scheme);
+  }
+
+  public synchronized MiningEngine getMiningEngine() {
+    if (miningEngine == null) {
+      miningEngine = MiningEngine.withAllCores();
+    }
+    return miningEngine;
+  }
+
+  // Stops the worker threads of this miner's mining engine, a later mineBlock() starts new ones
+  public synchronized void shutdownMiningEngine() {
+    if (miningEngine != null) {
+      miningEngine.shutdown();
+      miningEngine = null;
+    }
+  }
+
   // After a miner mines a block, the miner also signs it
   public boolean mineBlock(Block block) {
-    if ((block.mineTheBlock(this.getPublicKey()))) {
-      // now the miner needs to sign the block
-      byte[] signature = UtilityMethods.generateSignature(this.getPrivateKey(), block.getHashID());
-      return block.signTheBlock(this.getPublicKey(), signature);
+    if ((block.mineTheBlock(this.getPublicKey(), this.getMiningEngine()))) {
+      return signBlock(block);
     } else {
       return false;
     }
   }
 
+  // now the miner needs to sign the block
+  boolean signBlock(Block block) {
+    byte[] signature =
+        UtilityMethods.generateSignature(this.getPrivateKey(), block.getHashID().toBytes());
+    return block.signTheBlock(this.getPublicKey(), signature);
+  }
+
+  /**
+   * Mines and signs the block in the background. If another block extends the local ledger while
+   * mining, the block is rebuilt on top of it and mining starts over, see {@link MiningTask}.
+   */
+  public MiningTask mineBlockAsync(Block block) {
+    MiningTask task = new MiningTask(this, block);
+    activeTasks.add(task);
+    MINING_COORDINATORS.execute(task::run);
+    return task;
+  }
+
+  void taskFinished(MiningTask task) {
+    activeTasks.remove(task);
+  }
+
+  @Override
+  protected void localLedgerTipChanged(Block lastBlock) {
+    for (MiningTask task : activeTasks) {
+      task.tipChanged(lastBlock.getHashID());
+    }
+  }
+
+  /**
+   * Builds a new block on the last block of the local ledger out of an abandoned one. The
+   * transactions which are still valid are kept and a new reward transaction is generated.
+   */
+  Block rebuildOnLocalTip(Block abandoned) {
+    BlockTemplateBuilder builder = new BlockTemplateBuilder(this);
+    for (int i = 0; i < abandoned.getNumberOfTransactions(); i++) {
+      // transactions already included by the competing block are dropped by the builder
+      builder.addPendingTransaction(abandoned.getTransaction(i));
+    }
+    return builder.build(this.getLocalLedger());
+  }
+
+  /**
+   * Builds a block on the last block of the local ledger, ready to be mined: the pending
+   * transactions are validated in a batch, added highest fee first and followed by the reward
+   * transaction. See {@link BlockTemplateBuilder}.
+   */
+  public Block createBlockTemplate(Collection<Transaction> pending) {
+    BlockTemplateBuilder builder = new BlockTemplateBuilder(this);
+    builder.addPendingTransactions(pending);
+    return builder.build();
+  }
+
+  void recordAbandonedTemplate(long hashes, long hashingNanos, long stopLatencyNanos) {
+    this.abandonedTemplates.incrementAndGet();
+    this.staleHashes.addAndGet(hashes);
+    this.staleHashingNanos.addAndGet(hashingNanos);
+    this.stopLatencyNanos.addAndGet(stopLatencyNanos);
+  }
+
+  // Number of block templates abandoned because another block extended the local ledger first
+  public long getAbandonedTemplates() {
+    return abandonedTemplates.get();
+  }
+
+  // Hashes spent on templates that turned out to be stale
+  public long getStaleHashes() {
+    return staleHashes.get();
+  }
+
+  // Time spent hashing templates that turned out to be stale, until their workers stopped
+  public long getStaleHashingMillis() {
+    return staleHashingNanos.get() / 1_000_000;
+  }
+
+  // Total time between learning that a template is stale and all the workers having stopped
+  public long getStopLatencyMillis() {
+    return stopLatencyNanos.get() / 1_000_000;
+  }
+
   // a transaction must be validated before being added into a block
   public boolean addTransaction(Transaction ts, Block block) {
     if (this.validateTransaction(ts)) {
@@ -39,8 +166,15 @@ public class Miner extends Wallet {
     return block.setRewardTransaction(this.getPublicKey(), T);
   }
 
-  public Block createNewBlock(Blockchain ledger, int difficultLevel) {
-    Block b = new Block(ledger.getLastBlock().getHashID(), difficultLevel, this.getPublicKey());
-    return b;
+  // Creates a block on the last block of the ledger, with the difficulty level the ledger requires
+  // for its next block; the ledger would reject any other level
+  public Block createNewBlock(Blockchain ledger) {
+    synchronized (ledger) {
+      Block last = ledger.getLastBlock();
+      // a block must be stamped later than its parent, even when both are made in one millisecond
+      long timestamp = Math.max(UtilityMethods.getTimeStamp(), last.getTimestamp() + 1);
+      return new Block(
+          last.getHashID(), ledger.getNextDifficultyLevel(), this.getPublicKey(), timestamp);
+    }
   }
 }
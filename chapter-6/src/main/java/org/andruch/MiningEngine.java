@@ -0,0 +1,208 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+
+/**
+ * Searches the nonce space of a block with a pool of worker threads. The 64-bit nonce space is cut
+ * into one contiguous range per worker, so no two workers ever hash the same nonce and they never
+ * need to coordinate. As soon as one worker finds a hash that meets the difficulty level, all the
+ * others stop.
+ */
+public class MiningEngine {
+  // Nonces handed to the kernel at a time, the cancel flags are checked between batches
+  private static final int BATCH_SIZE = 1024;
+  // Gives every worker thread of every engine its own name in the metrics
+  private static final AtomicInteger WORKER_NUMBER = new AtomicInteger();
+  // Workers idle for this long end, an engine that is not mining holds no threads
+  private static final long WORKER_KEEP_ALIVE_SECONDS = 30;
+  // The names the hashes of the workers are reported under in MiningMetrics: the worker threads
+  // end and are replaced under new names, the i-th range of the nonce space is always searched by
+  // worker slot i. Engines with more workers than this report the others under the last slot.
+  private static final String[] WORKER_SLOTS = new String[256];
+
+  static {
+    for (int i = 0; i < WORKER_SLOTS.length; i++) {
+      WORKER_SLOTS[i] = "mining-worker-slot-" + (i + 1);
+    }
+  }
+
+  @Getter private final int numberOfThreads;
+  @Getter private final MiningKernel kernel;
+  private final ExecutorService workers;
+  // Total number of nonces tried by this engine, useful to compute the hashrate
+  private final AtomicLong hashesTried = new AtomicLong();
+
+  public MiningEngine(int numberOfThreads) {
+    this(numberOfThreads, MiningKernel.best());
+  }
+
+  public MiningEngine(int numberOfThreads, MiningKernel kernel) {
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("numberOfThreads must be at least 1");
+    }
+    this.numberOfThreads = numberOfThreads;
+    this.kernel = kernel;
+    ThreadPoolExecutor pool =
+        new ThreadPoolExecutor(
+            numberOfThreads,
+            numberOfThreads,
+            WORKER_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            r -> {
+              Thread t = new Thread(r, "mining-worker-" + WORKER_NUMBER.incrementAndGet());
+              // the workers must not keep the JVM alive once the platform is done
+              t.setDaemon(true);
+              return t;
+            });
+    pool.allowCoreThreadTimeOut(true);
+    this.workers = pool;
+  }
+
+  public static MiningEngine withAllCores() {
+    return new MiningEngine(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Mines the block by splitting the nonce space among the workers. On success the winning nonce
+   * and its hashID are stored in the block.
+   *
+   * @return True if a nonce was found, false if the search was interrupted.
+   */
+  boolean mine(Block block) {
+    return mine(block, new AtomicBoolean(false), new AtomicLong());
+  }
+
+  /**
+   * Same as mine(block), but the search can be aborted from another thread by setting cancelled to
+   * true. The workers check the flag between batches of BATCH_SIZE nonces, so each one stops after
+   * at most one more batch. If the calling thread is interrupted, the workers are stopped the same
+   * way and waited for, and the interrupt status is kept: when mine() returns no worker is left
+   * hashing the block. The same holds when a worker fails: its exception is rethrown once the
+   * others have stopped.
+   *
+   * @param hashes Receives the number of nonces tried during this call.
+   * @return True if a nonce was found, false if the search was cancelled or interrupted.
+   */
+  boolean mine(Block block, AtomicBoolean cancelled, AtomicLong hashes) {
+    MiningEvents.MiningAttempt event = new MiningEvents.MiningAttempt();
+    event.begin();
+    long start = System.nanoTime();
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicBoolean found = new AtomicBoolean(false);
+    List<Future<Long>> futures = new ArrayList<>(numberOfThreads);
+    // 2^64 / numberOfThreads nonces per worker (unsigned arithmetic)
+    long rangeSize = Long.divideUnsigned(-1L, numberOfThreads);
+    for (int i = 0; i < numberOfThreads; i++) {
+      long firstNonce = i * rangeSize;
+      String slot = WORKER_SLOTS[Math.min(i, WORKER_SLOTS.length - 1)];
+      futures.add(
+          workers.submit(() -> search(block, slot, firstNonce, rangeSize, done, found, cancelled)));
+    }
+    long tries = 0;
+    boolean interrupted = false;
+    Throwable failure = null;
+    for (Future<Long> f : futures) {
+      while (true) {
+        try {
+          tries += f.get();
+          break;
+        } catch (InterruptedException e) {
+          // stop the workers, and keep waiting until they all have
+          interrupted = true;
+          done.set(true);
+        } catch (ExecutionException e) {
+          // same, the first failure is thrown once no worker is left
+          if (failure == null) {
+            failure = e.getCause();
+          }
+          done.set(true);
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw new RuntimeException(failure);
+    }
+    hashes.addAndGet(tries);
+    MiningMetrics.global()
+        .recordAttempt(found.get(), block.getDifficultyLevel(), System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.difficultyLevel = block.getDifficultyLevel();
+      event.hashes = tries;
+      event.found = found.get();
+      event.threads = numberOfThreads;
+      event.kernel = kernel.getName();
+      event.commit();
+    }
+    return found.get();
+  }
+
+  // Returns the number of nonces tried by this worker
+  private long search(
+      Block block,
+      String slot,
+      long nonce,
+      long rangeSize,
+      AtomicBoolean done,
+      AtomicBoolean found,
+      AtomicBoolean cancelled) {
+    MiningEvents.MiningWork event = new MiningEvents.MiningWork();
+    event.begin();
+    long start = System.nanoTime();
+    long tries = 0;
+    MiningKernel.NonceSearcher searcher = kernel.prepare(block);
+    while (!done.get() && !cancelled.get() && tries != rangeSize) {
+      // the range is unsigned, (rangeSize - tries) may not fit in a signed long
+      int count =
+          (int)
+              (Long.compareUnsigned(rangeSize - tries, BATCH_SIZE) < 0
+                  ? rangeSize - tries
+                  : BATCH_SIZE);
+      int i = searcher.search(nonce, count);
+      if (i < 0) {
+        tries += count;
+        nonce += count;
+        continue;
+      }
+      tries += i + 1;
+      // only the first worker to find a solution gets to store it
+      if (done.compareAndSet(false, true)) {
+        block.setMiningResult(nonce + i, block.computeHashID(nonce + i));
+        found.set(true);
+      }
+      break;
+    }
+    hashesTried.addAndGet(tries);
+    MiningMetrics.global().recordHashes(slot, tries, System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.difficultyLevel = block.getDifficultyLevel();
+      event.hashes = tries;
+      event.commit();
+    }
+    return tries;
+  }
+
+  public long getHashesTried() {
+    return hashesTried.get();
+  }
+
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+}
@@ -0,0 +1,51 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR events emitted while mining. They cost nothing unless a recording is running, e.g. with
+ * -XX:StartFlightRecording or jcmd JFR.start.
+ */
+final class MiningEvents {
+  private MiningEvents() {}
+
+  /** One mining attempt on a block, from the start of the search to a solution or cancellation. */
+  @Name("org.andruch.MiningAttempt")
+  @Label("Mining Attempt")
+  @Category({"Blockchain", "Mining"})
+  @Description("Search for a nonce that meets the difficulty level of a block")
+  static class MiningAttempt extends Event {
+    @Label("Difficulty Level")
+    int difficultyLevel;
+
+    @Label("Hashes Tried")
+    long hashes;
+
+    @Label("Block Found")
+    boolean found;
+
+    @Label("Mining Threads")
+    int threads;
+
+    @Label("Mining Kernel")
+    String kernel;
+  }
+
+  /** The part of a mining attempt done by one thread; hashes / duration is its hashrate. */
+  @Name("org.andruch.MiningWork")
+  @Label("Mining Work")
+  @Category({"Blockchain", "Mining"})
+  @Description("Nonces hashed by one mining thread")
+  static class MiningWork extends Event {
+    @Label("Difficulty Level")
+    int difficultyLevel;
+
+    @Label("Hashes Tried")
+    long hashes;
+  }
+}
@@ -0,0 +1,42 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+/**
+ * The hashing strategy used by the {@link MiningEngine} workers to search a range of nonces. The
+ * scalar kernel hashes one nonce at a time with MessageDigest. The vector kernel hashes several
+ * nonces at once with the incubating Vector API, it is only available when the JVM is started with
+ * --add-modules jdk.incubator.vector.
+ */
+public interface MiningKernel {
+  String getName();
+
+  /** Prepares a search over the nonces of the block. Every mining worker needs its own searcher. */
+  NonceSearcher prepare(Block block);
+
+  interface NonceSearcher {
+    /**
+     * Tries the nonces firstNonce, firstNonce + 1, ..., firstNonce + count - 1 in this order.
+     *
+     * @return The offset of the first nonce whose hash meets the difficulty level of the block, or
+     *     -1 if there is none.
+     */
+    int search(long firstNonce, int count);
+  }
+
+  static MiningKernel scalar() {
+    return new ScalarMiningKernel();
+  }
+
+  /**
+   * @return The vector kernel if the Vector API is available, the scalar kernel otherwise.
+   */
+  static MiningKernel best() {
+    try {
+      return (MiningKernel)
+          Class.forName("org.andruch.VectorMiningKernel").getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+      // jdk.incubator.vector is not in the module graph, or the CPU has no usable vector unit
+      return scalar();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters about mining in this JVM: hashes tried, hashes per second per mining worker, time to
+ * solution per block and difficulty level. Every mining path (the single-threaded
+ * Block.mineTheBlock loop, the MiningEngine and the MiningScheduler) reports here. The same data is
+ * also emitted as the JFR events defined in {@link MiningEvents}, so it can be recorded in
+ * production and charted in JDK Mission Control.
+ */
+public class MiningMetrics {
+  private static final MiningMetrics GLOBAL = new MiningMetrics();
+
+  private final LongAdder hashesTried = new LongAdder();
+  private final LongAdder blocksMined = new LongAdder();
+  // Mining attempts that ended without a block, because they were cancelled or interrupted
+  private final LongAdder attemptsAbandoned = new LongAdder();
+  private final LongAdder totalTimeToSolutionNanos = new LongAdder();
+  private final AtomicLong maxTimeToSolutionNanos = new AtomicLong();
+  private volatile long lastTimeToSolutionNanos = 0;
+  private volatile int lastDifficultyLevel = 0;
+  private final Map<String, ThreadCounters> threads = new ConcurrentHashMap<>();
+
+  private static class ThreadCounters {
+    final LongAdder hashes = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+  }
+
+  public static MiningMetrics global() {
+    return GLOBAL;
+  }
+
+  // Called by the thread which did the hashing, reported under its name
+  void recordHashes(long hashes, long nanos) {
+    recordHashes(Thread.currentThread().getName(), hashes, nanos);
+  }
+
+  // Reported under the given worker name instead. Threads of pools that replace their idle threads
+  // must use a stable name, or the rate of every worker is spread over names that keep growing.
+  void recordHashes(String worker, long hashes, long nanos) {
+    hashesTried.add(hashes);
+    ThreadCounters c = threads.get(worker);
+    if (c == null) {
+      c = threads.computeIfAbsent(worker, k -> new ThreadCounters());
+    }
+    c.hashes.add(hashes);
+    c.nanos.add(nanos);
+  }
+
+  // Called once per mining attempt, with the time from the start of the attempt to its end
+  void recordAttempt(boolean found, int difficultyLevel, long nanos) {
+    lastDifficultyLevel = difficultyLevel;
+    if (!found) {
+      attemptsAbandoned.increment();
+      return;
+    }
+    blocksMined.increment();
+    totalTimeToSolutionNanos.add(nanos);
+    lastTimeToSolutionNanos = nanos;
+    maxTimeToSolutionNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public long getHashesTried() {
+    return hashesTried.sum();
+  }
+
+  public long getBlocksMined() {
+    return blocksMined.sum();
+  }
+
+  public long getAttemptsAbandoned() {
+    return attemptsAbandoned.sum();
+  }
+
+  public double getAverageTimeToSolutionMillis() {
+    long blocks = blocksMined.sum();
+    return blocks == 0 ? 0 : totalTimeToSolutionNanos.sum() / 1e6 / blocks;
+  }
+
+  public double getLastTimeToSolutionMillis() {
+    return lastTimeToSolutionNanos / 1e6;
+  }
+
+  public double getMaxTimeToSolutionMillis() {
+    return maxTimeToSolutionNanos.get() / 1e6;
+  }
+
+  // Difficulty level of the last block someone tried to mine
+  public int getLastDifficultyLevel() {
+    return lastDifficultyLevel;
+  }
+
+  /**
+   * @return For every thread that has been hashing, its hashes per second while it was hashing.
+   */
+  public Map<String, Double> getHashratePerThread() {
+    Map<String, Double> rates = new TreeMap<>();
+    threads.forEach(
+        (name, c) -> {
+          long nanos = c.nanos.sum();
+          rates.put(name, nanos == 0 ? 0 : c.hashes.sum() * 1e9 / nanos);
+        });
+    return rates;
+  }
+
+  public void reset() {
+    hashesTried.reset();
+    blocksMined.reset();
+    attemptsAbandoned.reset();
+    totalTimeToSolutionNanos.reset();
+    maxTimeToSolutionNanos.set(0);
+    lastTimeToSolutionNanos = 0;
+    lastDifficultyLevel = 0;
+    threads.clear();
+  }
+
+  public void print(PrintStream out, int level) {
+    PrintUtils.printWithTab(out, level, "Mining metrics {");
+    PrintUtils.printWithTab(out, level + 1, "hashes tried: " + getHashesTried());
+    PrintUtils.printWithTab(out, level + 1, "blocks mined: " + getBlocksMined());
+    PrintUtils.printWithTab(out, level + 1, "attempts abandoned: " + getAttemptsAbandoned());
+    PrintUtils.printWithTab(
+        out,
+        level + 1,
+        String.format(
+            "time to solution: last %.1f ms, average %.1f ms, max %.1f ms",
+            getLastTimeToSolutionMillis(),
+            getAverageTimeToSolutionMillis(),
+            getMaxTimeToSolutionMillis()));
+    PrintUtils.printWithTab(out, level + 1, "last difficulty level: " + getLastDifficultyLevel());
+    PrintUtils.printWithTab(out, level + 1, "hashrate per thread:");
+    getHashratePerThread()
+        .forEach(
+            (name, rate) ->
+                PrintUtils.printWithTab(out, level + 2, String.format("%s: %.0f H/s", name, rate)));
+    PrintUtils.printWithTab(out, level, "}");
+  }
+}
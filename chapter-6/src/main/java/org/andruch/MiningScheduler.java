@@ -0,0 +1,231 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+
+/**
+ * Runs the build-mine-sign-broadcast loop of many miners inside one JVM. No miner owns a thread:
+ * every step of a loop is a short task on a small, bounded pool of carrier threads. Hashing is cut
+ * into slices of SLICE_SIZE nonces and a miner queues its next slice behind everybody else's, so
+ * the cores are shared fairly however many miners there are. Mined blocks are delivered on a
+ * separate pool of the same size, so that they do not wait behind the hashing. Thousands of miners
+ * and wallets can be simulated at once this way.
+ *
+ * <p>A wallet that refuses a block because it is on another branch switches to the miner's chain
+ * when that chain is longer, through {@link Wallet#updateLocalLedger(ArrayList)}.
+ *
+ * <p>Every miner and wallet must already have a local ledger.
+ */
+public class MiningScheduler {
+  private static final int SLICE_SIZE = 16 * 1024;
+
+  private final ExecutorService carriers;
+  private final ExecutorService deliveries;
+  private final MiningKernel kernel;
+  private final List<Miner> miners = new CopyOnWriteArrayList<>();
+  // Everybody who receives the mined blocks, the miners included
+  private final List<Wallet> network = new CopyOnWriteArrayList<>();
+  private volatile boolean running = false;
+
+  private final LongAdder hashes = new LongAdder();
+  private final LongAdder blocksMined = new LongAdder();
+  private final LongAdder blocksAccepted = new LongAdder();
+  private final LongAdder blocksRejected = new LongAdder();
+  private final LongAdder templatesAbandoned = new LongAdder();
+  private final LongAdder chainSwitches = new LongAdder();
+  @Getter private final int carrierThreads;
+
+  public MiningScheduler(int carrierThreads) {
+    this.carrierThreads = carrierThreads;
+    this.kernel = MiningKernel.best();
+    this.carriers = Executors.newFixedThreadPool(carrierThreads, daemonThreads("mining-carrier"));
+    this.deliveries = Executors.newFixedThreadPool(carrierThreads, daemonThreads("block-delivery"));
+  }
+
+  private static ThreadFactory daemonThreads(String name) {
+    AtomicInteger number = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r, name + "-" + number.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    };
+  }
+
+  public void addMiner(Miner miner) {
+    miners.add(miner);
+    network.add(miner);
+  }
+
+  public void addWallet(Wallet wallet) {
+    network.add(wallet);
+  }
+
+  public void start() {
+    running = true;
+    for (Miner miner : miners) {
+      schedule(() -> buildBlock(miner));
+    }
+  }
+
+  // Stops all the loops and waits for the tasks already queued to finish
+  public void stop() throws InterruptedException {
+    running = false;
+    carriers.shutdown();
+    deliveries.shutdown();
+    carriers.awaitTermination(1, TimeUnit.MINUTES);
+    deliveries.awaitTermination(1, TimeUnit.MINUTES);
+  }
+
+  private void schedule(Runnable step) {
+    schedule(carriers, step);
+  }
+
+  private void schedule(ExecutorService executor, Runnable step) {
+    try {
+      executor.execute(step);
+    } catch (RejectedExecutionException e) {
+      // stopped in the meantime, the loop simply ends here
+    }
+  }
+
+  // A block being mined by one miner, carried from one slice to the next
+  private class Template {
+    final Miner miner;
+    final Block block;
+    final MiningKernel.NonceSearcher searcher;
+    final MiningEvents.MiningAttempt event = new MiningEvents.MiningAttempt();
+    final long start = System.nanoTime();
+    long hashes = 0;
+
+    Template(Miner miner, Block block) {
+      this.miner = miner;
+      this.block = block;
+      this.searcher = kernel.prepare(block);
+      event.begin();
+    }
+
+    void finish(boolean found) {
+      MiningMetrics.global()
+          .recordAttempt(found, block.getDifficultyLevel(), System.nanoTime() - start);
+      if (event.shouldCommit()) {
+        event.difficultyLevel = block.getDifficultyLevel();
+        event.hashes = hashes;
+        event.found = found;
+        event.threads = carrierThreads;
+        event.kernel = kernel.getName();
+        event.commit();
+      }
+    }
+  }
+
+  private void buildBlock(Miner miner) {
+    if (!running) return;
+    Block block = miner.createNewBlock(miner.getLocalLedger());
+    miner.generateRewardTransaction(block);
+    Template template = new Template(miner, block);
+    schedule(() -> mineSlice(template, 0));
+  }
+
+  private void mineSlice(Template template, long firstNonce) {
+    if (!running) return;
+    Miner miner = template.miner;
+    Block block = template.block;
+    // another block has extended the miner's ledger, this one can no longer be added
+    if (!miner.getLocalLedger().getLastBlock().getHashID().equals(block.getPreviousBlockHashID())) {
+      templatesAbandoned.increment();
+      template.finish(false);
+      buildBlock(miner);
+      return;
+    }
+    long start = System.nanoTime();
+    int i = template.searcher.search(firstNonce, SLICE_SIZE);
+    long tries = i < 0 ? SLICE_SIZE : i + 1;
+    hashes.add(tries);
+    template.hashes += tries;
+    MiningMetrics.global().recordHashes(tries, System.nanoTime() - start);
+    if (i < 0) {
+      schedule(() -> mineSlice(template, firstNonce + SLICE_SIZE));
+      return;
+    }
+    long nonce = firstNonce + i;
+    block.setMiningResult(nonce, block.computeHashID(nonce));
+    template.finish(true);
+    if (miner.signBlock(block)) {
+      blocksMined.increment();
+      broadcast(miner, block);
+    }
+    buildBlock(miner);
+  }
+
+  private void broadcast(Miner miner, Block block) {
+    // the miner moves on right away, the others receive the block as separate tasks
+    deliver(miner, miner, block);
+    for (Wallet w : network) {
+      if (w != miner) {
+        schedule(deliveries, () -> deliver(w, miner, block));
+      }
+    }
+  }
+
+  private void deliver(Wallet w, Miner from, Block block) {
+    if (!running) return;
+    if (w.updateLocalLedger(block)) {
+      blocksAccepted.increment();
+      return;
+    }
+    blocksRejected.increment();
+    Blockchain theirs = from.getLocalLedger().copy_NotDeepCopy();
+    if (theirs.getTotalWork().compareTo(w.getLocalLedger().getTotalWork()) > 0) {
+      ArrayList<Blockchain> chains = new ArrayList<>();
+      chains.add(theirs);
+      if (w.updateLocalLedger(chains) && w.getLocalLedger() == theirs) {
+        chainSwitches.increment();
+      }
+    }
+  }
+
+  public long getHashesTried() {
+    return hashes.sum();
+  }
+
+  public long getBlocksMined() {
+    return blocksMined.sum();
+  }
+
+  // Number of times a wallet added a mined block to its local ledger
+  public long getBlocksAccepted() {
+    return blocksAccepted.sum();
+  }
+
+  // Number of times a wallet refused a mined block, usually because a competing one came first
+  public long getBlocksRejected() {
+    return blocksRejected.sum();
+  }
+
+  // Number of times a wallet gave up its branch for a longer chain
+  public long getChainSwitches() {
+    return chainSwitches.sum();
+  }
+
+  public long getTemplatesAbandoned() {
+    return templatesAbandoned.sum();
+  }
+
+  public int getNumberOfMiners() {
+    return miners.size();
+  }
+
+  public int getNetworkSize() {
+    return network.size();
+  }
+}
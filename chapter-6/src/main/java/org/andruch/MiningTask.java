@@ -0,0 +1,128 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+
+/**
+ * A handle on a block being mined in the background by a {@link Miner}. When a competing block
+ * extends the miner's local ledger, the block being mined can no longer be added to the chain. The
+ * task then stops hashing, rebuilds the block on the new last block and starts mining again.
+ *
+ * <p>The task finishes once a block has been mined and signed, or when it is cancelled.
+ */
+public class MiningTask {
+  private final Miner miner;
+  private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+  private final AtomicBoolean cancelledByUser = new AtomicBoolean(false);
+
+  // The block currently being mined, it changes every time the template is rebuilt
+  @Getter private volatile Block block;
+  // Set when the current template has been overtaken, every template gets a fresh flag
+  private volatile AtomicBoolean staleTemplate = new AtomicBoolean(false);
+  // When the miner learned that the current template is stale, in System.nanoTime()
+  private volatile long tipChangedAt;
+
+  @Getter private volatile int abandonedTemplates = 0;
+  private final AtomicLong hashes = new AtomicLong();
+  private volatile long staleHashes = 0;
+
+  MiningTask(Miner miner, Block block) {
+    this.miner = miner;
+    this.block = block;
+  }
+
+  // Runs on a coordinator thread, the hashing itself happens in the miner's mining engine
+  void run() {
+    try {
+      while (true) {
+        AtomicBoolean stale = new AtomicBoolean(false);
+        this.staleTemplate = stale;
+        // the tip may have moved, or the task may have been cancelled, before the flag was in place
+        if (cancelledByUser.get()) {
+          break;
+        }
+        if (!isBuiltOnLocalTip()) {
+          // stale before any hashing
+          abandon(0, 0, 0);
+          continue;
+        }
+        long hashesBefore = hashes.get();
+        long start = System.nanoTime();
+        if (block.mineTheBlock(miner.getPublicKey(), miner.getMiningEngine(), stale, hashes)) {
+          result.complete(miner.signBlock(block));
+          return;
+        }
+        if (cancelledByUser.get() || !stale.get()) {
+          // cancelled, or the block cannot be mined by this miner
+          break;
+        }
+        long end = System.nanoTime();
+        abandon(hashes.get() - hashesBefore, end - start, end - Math.max(start, tipChangedAt));
+      }
+      result.complete(false);
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    } finally {
+      miner.taskFinished(this);
+    }
+  }
+
+  // Every abandoned template is counted here and by the miner, then rebuilt on the new tip
+  private void abandon(long wasted, long hashingNanos, long stopLatencyNanos) {
+    abandonedTemplates++;
+    staleHashes += wasted;
+    miner.recordAbandonedTemplate(wasted, hashingNanos, stopLatencyNanos);
+    this.block = miner.rebuildOnLocalTip(block);
+  }
+
+  private boolean isBuiltOnLocalTip() {
+    Blockchain ledger = miner.getLocalLedger();
+    return ledger == null
+        || ledger.getLastBlock().getHashID().equals(block.getPreviousBlockHashID());
+  }
+
+  // Called by the miner every time the last block of its local ledger changes
+  void tipChanged(Hash256 newTipHashID) {
+    if (!newTipHashID.equals(block.getPreviousBlockHashID())) {
+      tipChangedAt = System.nanoTime();
+      staleTemplate.set(true);
+    }
+  }
+
+  /** Stops mining. The task finishes with false unless a block was already mined. */
+  public void cancel() {
+    cancelledByUser.set(true);
+    staleTemplate.set(true);
+  }
+
+  public boolean isDone() {
+    return result.isDone();
+  }
+
+  /**
+   * Waits for the task to finish.
+   *
+   * @return True if the block returned by getBlock() has been mined and signed.
+   */
+  public boolean get() throws InterruptedException {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  // Total number of nonces tried by this task, over all the templates
+  public long getHashesTried() {
+    return hashes.get();
+  }
+
+  // Number of nonces tried on templates that were abandoned because another block won
+  public long getStaleHashes() {
+    return staleHashes;
+  }
+}
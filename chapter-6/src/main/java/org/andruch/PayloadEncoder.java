@@ -0,0 +1,104 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.Arrays;
+
+/**
+ * Writes the fields of a transaction or UTXO payload, the data that is hashed into its ID and
+ * signed, in a fixed binary layout: numbers big-endian, hashes as their 32 bytes and public keys as
+ * their encoded form preceded by its length. Every thread has one encoder whose buffer is reused
+ * from one payload to the next, so hashing or verifying a transaction does not build any String.
+ *
+ * <p>The buffer is only valid until the next call to {@link #get()} on the same thread. IDs of the
+ * String payloads used before are converted with {@link Hash256#fromLegacyId(String)}.
+ */
+final class PayloadEncoder {
+  // The tag written first in every payload, so that the layout can change in a later version
+  static final int VERSION = 1;
+
+  private static final ThreadLocal<PayloadEncoder> ENCODER =
+      ThreadLocal.withInitial(PayloadEncoder::new);
+
+  private byte[] buffer = new byte[1024];
+  private int size = 0;
+
+  private PayloadEncoder() {}
+
+  // The encoder of the current thread, emptied
+  static PayloadEncoder get() {
+    PayloadEncoder encoder = ENCODER.get();
+    encoder.size = 0;
+    return encoder;
+  }
+
+  private void ensureCapacity(int extra) {
+    if (size + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+  }
+
+  PayloadEncoder writeByte(int v) {
+    ensureCapacity(1);
+    buffer[size++] = (byte) v;
+    return this;
+  }
+
+  PayloadEncoder writeInt(int v) {
+    ensureCapacity(Integer.BYTES);
+    for (int i = Integer.BYTES - 1; i >= 0; i--) {
+      buffer[size + i] = (byte) v;
+      v >>>= Byte.SIZE;
+    }
+    size += Integer.BYTES;
+    return this;
+  }
+
+  PayloadEncoder writeLong(long v) {
+    ensureCapacity(Long.BYTES);
+    for (int i = Long.BYTES - 1; i >= 0; i--) {
+      buffer[size + i] = (byte) v;
+      v >>>= Byte.SIZE;
+    }
+    size += Long.BYTES;
+    return this;
+  }
+
+  // The IEEE 754 bits, so the same amount always encodes the same way
+  PayloadEncoder writeDouble(double v) {
+    return writeLong(Double.doubleToLongBits(v));
+  }
+
+  PayloadEncoder writeHash(Hash256 hash) {
+    ensureCapacity(Hash256.LENGTH);
+    hash.writeTo(buffer, size);
+    size += Hash256.LENGTH;
+    return this;
+  }
+
+  PayloadEncoder writeKey(AccountId account) {
+    return writeBytes(account.encoded());
+  }
+
+  // Length first, so that two adjacent fields can never be confused with two others
+  PayloadEncoder writeBytes(byte[] bytes) {
+    writeInt(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, size, bytes.length);
+    size += bytes.length;
+    return this;
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int size() {
+    return size;
+  }
+
+  Hash256 sha256() {
+    byte[] digest = new byte[Hash256.LENGTH];
+    DigestService.sha256(buffer, 0, size, digest, 0);
+    return Hash256.of(digest);
+  }
+}
@@ -55,7 +55,7 @@ public class PrintUtils {
 
   public static void displayBlock(Block block, PrintStream out, int level) {
     printWithTab(out, level, "Block{");
-    printWithTab(out, level, "\tID: " + block.getHashID());
+    printWithTab(out, level, "\tID: " + block.getHashID().toBinaryString());
     for (int i = 0; i < block.getNumberOfTransactions(); i++) {
       printTransaction(block.getTransaction(i), out, level + 1);
     }
@@ -0,0 +1,24 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+// Hashes one nonce at a time from the cached midstate of a BlockHeaderHasher
+class ScalarMiningKernel implements MiningKernel {
+  @Override
+  public String getName() {
+    return "scalar";
+  }
+
+  @Override
+  public NonceSearcher prepare(Block block) {
+    BlockHeaderHasher hasher = new BlockHeaderHasher(block);
+    int difficultyLevel = block.getDifficultyLevel();
+    return (firstNonce, count) -> {
+      for (int i = 0; i < count; i++) {
+        if (UtilityMethods.hashMeetsDifficultyLevel(hasher.hash(firstNonce + i), difficultyLevel)) {
+          return i;
+        }
+      }
+      return -1;
+    };
+  }
+}
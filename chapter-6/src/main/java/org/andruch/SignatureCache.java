@@ -0,0 +1,166 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the signatures already found valid in this JVM. Every wallet and miner of a node
+ * verifies the same blocks and transactions, but a given (signer, message, signature) triple only
+ * goes through the signature algorithm once; the others find it here. Only valid signatures are
+ * stored, an invalid one is verified again every time.
+ *
+ * <p>The cache is bounded and evicts the least recently used entries. It is split into segments,
+ * each with its own lock, so that parallel validation threads rarely wait for each other.
+ */
+public class SignatureCache {
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+  // A power of two, the segment is chosen by the top bits of the entry's hashCode
+  private static final int SEGMENTS = 16;
+
+  private static final SignatureCache GLOBAL = new SignatureCache(DEFAULT_CAPACITY);
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  // A least recently used map of the keys of valid signatures
+  private class Segment extends LinkedHashMap<Hash256, Boolean> {
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Hash256, Boolean> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  public SignatureCache(int capacity) {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment(Math.max(1, capacity / SEGMENTS));
+    }
+  }
+
+  public static SignatureCache global() {
+    return GLOBAL;
+  }
+
+  public boolean verify(PublicKey key, byte[] signature, byte[] message, int offset, int length) {
+    Hash256 entry = entryFor(key, signature, DigestService.sha256(message, offset, length));
+    Segment segment = segmentFor(entry);
+    if (lookup(segment, entry)) {
+      return true;
+    }
+    // verified with the scheme of the signer's key
+    boolean valid = SignatureScheme.of(key).verify(key, signature, message, offset, length);
+    return store(segment, entry, valid);
+  }
+
+  // Verifies against the remaining bytes of the buffer, which is left at its limit
+  public boolean verify(PublicKey key, byte[] signature, ByteBuffer message) {
+    Hash256 entry = entryFor(key, signature, DigestService.sha256(message.duplicate()));
+    Segment segment = segmentFor(entry);
+    if (lookup(segment, entry)) {
+      message.position(message.limit());
+      return true;
+    }
+    boolean valid = SignatureScheme.of(key).verify(key, signature, message);
+    return store(segment, entry, valid);
+  }
+
+  private Segment segmentFor(Hash256 entry) {
+    return segments[entry.hashCode() >>> (Integer.SIZE - Integer.numberOfTrailingZeros(SEGMENTS))];
+  }
+
+  private boolean lookup(Segment segment, Hash256 entry) {
+    synchronized (segment) {
+      if (segment.get(entry) != null) {
+        hits.increment();
+        return true;
+      }
+    }
+    misses.increment();
+    return false;
+  }
+
+  private boolean store(Segment segment, Hash256 entry, boolean valid) {
+    if (valid) {
+      synchronized (segment) {
+        segment.put(entry, Boolean.TRUE);
+      }
+    }
+    return valid;
+  }
+
+  // The signer's fingerprint, the digest of the message and the signature, hashed together
+  private static Hash256 entryFor(PublicKey key, byte[] signature, byte[] messageDigest) {
+    byte[] b = new byte[Hash256.LENGTH * 2 + signature.length];
+    AccountId.of(key).getFingerprint().writeTo(b, 0);
+    System.arraycopy(messageDigest, 0, b, Hash256.LENGTH, Hash256.LENGTH);
+    System.arraycopy(signature, 0, b, Hash256.LENGTH * 2, signature.length);
+    return Hash256.sha256(b);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public double getHitRate() {
+    long lookups = getHits() + getMisses();
+    return lookups == 0 ? 0 : (double) getHits() / lookups;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+    hits.reset();
+    misses.reset();
+    evictions.reset();
+  }
+
+  public void print(PrintStream out, int level) {
+    PrintUtils.printWithTab(out, level, "Signature cache {");
+    PrintUtils.printWithTab(out, level + 1, "entries: " + size());
+    PrintUtils.printWithTab(
+        out,
+        level + 1,
+        String.format(
+            "hits: %d, misses: %d, hit rate: %.1f%%", getHits(), getMisses(), getHitRate() * 100));
+    PrintUtils.printWithTab(out, level + 1, "evictions: " + getEvictions());
+    PrintUtils.printWithTab(out, level, "}");
+  }
+}
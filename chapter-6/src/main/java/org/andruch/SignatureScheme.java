@@ -0,0 +1,138 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.EdECKey;
+import java.security.interfaces.RSAKey;
+
+/**
+ * The signature algorithms wallets can sign with. A key belongs to exactly one scheme, so
+ * signatures are always verified with the scheme of the signer's key; a blockchain declares which
+ * scheme all its keys must use.
+ *
+ * <p>RSA keeps the 2048-bit keys wallets always had. Ed25519 keys generate and sign faster, and an
+ * encoded public key takes 44 bytes instead of 294, which makes every transaction and UTXO payload
+ * smaller. The JDK verifies Ed25519 signatures much more slowly than RSA ones though, so a node
+ * that mostly validates blocks is better off with RSA.
+ *
+ * <p>Looking up a Signature with Signature.getInstance() goes through the security providers and
+ * sets up a new engine every time, so every thread keeps one engine per scheme and initializes it
+ * again with the key of each signature. A Signature is not thread-safe, but an engine is never
+ * shared between threads, so all the methods can be called from parallel validation threads.
+ */
+public enum SignatureScheme {
+  RSA("RSA", "SHA256withRSA"),
+  ED25519("Ed25519", "Ed25519");
+
+  private static final int RSA_KEY_SIZE = 2048;
+
+  private final String keyAlgorithm;
+  private final String signatureAlgorithm;
+  // This thread's engine, initVerify() and initSign() reset whatever an earlier call left in it
+  private final ThreadLocal<Signature> engines;
+
+  SignatureScheme(String keyAlgorithm, String signatureAlgorithm) {
+    this.keyAlgorithm = keyAlgorithm;
+    this.signatureAlgorithm = signatureAlgorithm;
+    this.engines =
+        ThreadLocal.withInitial(
+            () -> {
+              try {
+                return Signature.getInstance(signatureAlgorithm);
+              } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+              }
+            });
+  }
+
+  public static SignatureScheme of(Key key) {
+    if (key instanceof RSAKey) {
+      return RSA;
+    }
+    if (key instanceof EdECKey edKey && "Ed25519".equals(edKey.getParams().getName())) {
+      return ED25519;
+    }
+    throw new IllegalArgumentException("no signature scheme for " + key.getAlgorithm() + " keys");
+  }
+
+  public KeyPair generateKeyPair() {
+    try {
+      KeyPairGenerator kpg = KeyPairGenerator.getInstance(keyAlgorithm);
+      if (this == RSA) {
+        kpg.initialize(RSA_KEY_SIZE);
+      }
+      return kpg.generateKeyPair();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public byte[] sign(PrivateKey privateKey, byte[] message, int offset, int length) {
+    try {
+      Signature sig = engines.get();
+      sig.initSign(privateKey);
+      sig.update(message, offset, length);
+      return sig.sign();
+    } catch (InvalidKeyException | SignatureException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Signs the remaining bytes of the buffer, which is left at its limit
+  public byte[] sign(PrivateKey privateKey, ByteBuffer message) {
+    try {
+      Signature sig = engines.get();
+      sig.initSign(privateKey);
+      sig.update(message);
+      return sig.sign();
+    } catch (InvalidKeyException | SignatureException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public boolean verify(
+      PublicKey publicKey, byte[] signature, byte[] message, int offset, int length) {
+    try {
+      Signature sig = engines.get();
+      sig.initVerify(publicKey);
+      sig.update(message, offset, length);
+      return sig.verify(signature);
+    } catch (SignatureException e) {
+      // a signature that is not even well formed
+      return false;
+    } catch (InvalidKeyException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Verifies against the remaining bytes of the buffer, which is left at its limit
+  public boolean verify(PublicKey publicKey, byte[] signature, ByteBuffer message) {
+    try {
+      Signature sig = engines.get();
+      sig.initVerify(publicKey);
+      sig.update(message);
+      return sig.verify(signature);
+    } catch (SignatureException e) {
+      return false;
+    } catch (InvalidKeyException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public boolean owns(Key key) {
+    try {
+      return of(key) == this;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+}
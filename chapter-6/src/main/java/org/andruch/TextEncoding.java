@@ -0,0 +1,168 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import java.util.Base64;
+
+/**
+ * Binary, hex and Base64 forms of digests and keys, written from lookup tables into char arrays the
+ * caller provides, so a hot loop can encode into the same buffer again and again without
+ * allocating. The binary and hex String forms allocate only a char array and the String; a Base64
+ * String is left to java.util.Base64, which builds it from a byte array with fewer allocations.
+ *
+ * <p>The binary form is the one block hashIDs were printed and checked in: every byte is shifted by
+ * 128 before its 8 bits are written, see UtilityMethods.toBinaryString(). Hex is lowercase and
+ * Base64 uses the standard alphabet with padding, as java.util.Base64.getEncoder() does.
+ */
+public final class TextEncoding {
+  public static final int BINARY_CHARS_PER_BYTE = 8;
+  public static final int HEX_CHARS_PER_BYTE = 2;
+
+  // The 8 '0'/'1' characters of every byte value, shifted by 128
+  private static final char[] BINARY = new char[256 * BINARY_CHARS_PER_BYTE];
+  // The 2 hex digits of every byte value
+  private static final char[] HEX = new char[256 * HEX_CHARS_PER_BYTE];
+  static final char[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  static {
+    char[] digits = "0123456789abcdef".toCharArray();
+    for (int b = 0; b < 256; b++) {
+      int shifted = b ^ 0x80;
+      for (int bit = 0; bit < BINARY_CHARS_PER_BYTE; bit++) {
+        BINARY[b * BINARY_CHARS_PER_BYTE + bit] = (shifted & (0x80 >>> bit)) == 0 ? '0' : '1';
+      }
+      HEX[b * HEX_CHARS_PER_BYTE] = digits[b >>> 4];
+      HEX[b * HEX_CHARS_PER_BYTE + 1] = digits[b & 0xF];
+    }
+  }
+
+  private TextEncoding() {}
+
+  public static int base64Length(int bytes) {
+    return (bytes + 2) / 3 * 4;
+  }
+
+  /** Writes the binary form of the bytes into out, and returns the number of chars written. */
+  public static int writeBinary(byte[] data, int offset, int length, char[] out, int outOffset) {
+    for (int i = 0; i < length; i++) {
+      System.arraycopy(
+          BINARY,
+          (data[offset + i] & 0xFF) * BINARY_CHARS_PER_BYTE,
+          out,
+          outOffset + i * BINARY_CHARS_PER_BYTE,
+          BINARY_CHARS_PER_BYTE);
+    }
+    return length * BINARY_CHARS_PER_BYTE;
+  }
+
+  // The binary form of the 8 big-endian bytes of word, 64 chars
+  public static int writeBinary(long word, char[] out, int outOffset) {
+    for (int i = 0; i < Long.BYTES; i++) {
+      int b = (int) (word >>> (56 - i * Byte.SIZE)) & 0xFF;
+      System.arraycopy(
+          BINARY,
+          b * BINARY_CHARS_PER_BYTE,
+          out,
+          outOffset + i * BINARY_CHARS_PER_BYTE,
+          BINARY_CHARS_PER_BYTE);
+    }
+    return Long.BYTES * BINARY_CHARS_PER_BYTE;
+  }
+
+  public static int writeHex(byte[] data, int offset, int length, char[] out, int outOffset) {
+    for (int i = 0; i < length; i++) {
+      int b = data[offset + i] & 0xFF;
+      out[outOffset + i * 2] = HEX[b * HEX_CHARS_PER_BYTE];
+      out[outOffset + i * 2 + 1] = HEX[b * HEX_CHARS_PER_BYTE + 1];
+    }
+    return length * HEX_CHARS_PER_BYTE;
+  }
+
+  public static int writeBase64(byte[] data, int offset, int length, char[] out, int outOffset) {
+    int end = offset + length;
+    int o = outOffset;
+    int i = offset;
+    for (; i + 3 <= end; i += 3) {
+      int bits = (data[i] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | (data[i + 2] & 0xFF);
+      out[o++] = BASE64[bits >>> 18];
+      out[o++] = BASE64[(bits >>> 12) & 0x3F];
+      out[o++] = BASE64[(bits >>> 6) & 0x3F];
+      out[o++] = BASE64[bits & 0x3F];
+    }
+    if (i < end) {
+      int bits = (data[i] & 0xFF) << 16 | (i + 1 < end ? (data[i + 1] & 0xFF) << 8 : 0);
+      out[o++] = BASE64[bits >>> 18];
+      out[o++] = BASE64[(bits >>> 12) & 0x3F];
+      out[o++] = i + 1 < end ? BASE64[(bits >>> 6) & 0x3F] : '=';
+      out[o++] = '=';
+    }
+    return o - outOffset;
+  }
+
+  public static String toBinaryString(byte[] data) {
+    char[] out = new char[data.length * BINARY_CHARS_PER_BYTE];
+    writeBinary(data, 0, data.length, out, 0);
+    return new String(out);
+  }
+
+  // The bytes a binary form written by toBinaryString() was made of
+  public static byte[] fromBinaryString(CharSequence binary) {
+    if (binary.length() % BINARY_CHARS_PER_BYTE != 0) {
+      throw new IllegalArgumentException("not a binary form of whole bytes: " + binary.length());
+    }
+    byte[] data = new byte[binary.length() / BINARY_CHARS_PER_BYTE];
+    for (int i = 0; i < binary.length(); i++) {
+      char c = binary.charAt(i);
+      if (c != '0' && c != '1') {
+        throw new IllegalArgumentException("not a binary digit: " + c);
+      }
+      data[i / BINARY_CHARS_PER_BYTE] = (byte) (data[i / BINARY_CHARS_PER_BYTE] << 1 | (c - '0'));
+    }
+    // undo the shift by 128
+    for (int i = 0; i < data.length; i++) {
+      data[i] ^= (byte) 0x80;
+    }
+    return data;
+  }
+
+  public static String toHexString(byte[] data) {
+    char[] out = new char[data.length * HEX_CHARS_PER_BYTE];
+    writeHex(data, 0, data.length, out, 0);
+    return new String(out);
+  }
+
+  public static String toBase64(byte[] data) {
+    return Base64.getEncoder().encodeToString(data);
+  }
+
+  /** The number of '0' characters a binary form, such as a legacy String hashID, starts with. */
+  public static int countLeadingZeroChars(CharSequence binary) {
+    int n = binary.length();
+    for (int i = 0; i < n; i++) {
+      if (binary.charAt(i) != '0') {
+        return i;
+      }
+    }
+    return n;
+  }
+
+  /**
+   * The number of '0' characters the binary form of the bytes would start with, counted without
+   * writing it. The binary form shifts every byte by 128, so this is the leading zero bits of the
+   * bytes XORed with 0x80, not of the bytes themselves. Block proof of work is counted this way.
+   */
+  public static int countLeadingZeroBinaryChars(byte[] data, int offset, int length) {
+    for (int i = 0; i < length; i++) {
+      int x = (data[offset + i] ^ 0x80) & 0xFF;
+      if (x != 0) {
+        return i * Byte.SIZE + Integer.numberOfLeadingZeros(x) - (Integer.SIZE - Byte.SIZE);
+      }
+    }
+    return length * Byte.SIZE;
+  }
+
+  // The same count, with the same shift of every byte, for the 8 big-endian bytes of word
+  public static int countLeadingZeroBinaryChars(long word) {
+    return Long.numberOfLeadingZeros(word ^ 0x8080808080808080L);
+  }
+}
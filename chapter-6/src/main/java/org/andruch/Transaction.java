@@ -6,12 +6,13 @@ import java.io.Serializable;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.Arrays;
 import lombok.Getter;
 
 public class Transaction implements Serializable {
   @Serial private static final long serialVersionUID = 1L;
   public static final double TRANSACTION_FEE = 1.0;
-  @Getter private String hashID;
+  @Getter private Hash256 hashID;
   @Getter private PublicKey sender;
   private PublicKey[] receivers;
   private double[] fundsToTransfer;
@@ -21,6 +22,12 @@ public class Transaction implements Serializable {
   private byte[] signature = null;
   private boolean signed = false;
   @Getter private long mySeqNumber;
+  // Looked up from the keys when first needed, also after deserialization
+  private transient AccountId senderId;
+  private transient AccountId[] receiverIds;
+  // Not serialized, so that deserialized transactions are encoded and verified again
+  private transient byte[] payload;
+  private transient volatile Boolean signatureValid;
 
   public Transaction(
       PublicKey sender, PublicKey receiver, double fundsToTransfer, ArrayList<UTXO> inputs) {
@@ -40,45 +47,88 @@ public class Transaction implements Serializable {
       PublicKey sender, PublicKey[] receivers, double[] fundsToTransfer, ArrayList<UTXO> inputs) {
     this.mySeqNumber = UtilityMethods.getUniqueNumber();
     this.sender = sender;
-    // this.receivers = new PublicKey[1];
-    this.receivers = receivers;
-    this.fundsToTransfer = fundsToTransfer;
-    this.inputs = inputs;
+    // copies, so that the caller cannot change what has been hashed and signed
+    this.receivers = receivers.clone();
+    this.fundsToTransfer = fundsToTransfer.clone();
+    this.inputs = inputs == null ? null : new ArrayList<>(inputs);
     this.timestamp = UtilityMethods.getTimeStamp();
     this.hashID = computeHashID();
   }
 
   public void signTheTransaction(PrivateKey privateKey) {
     if (signature == null && !signed) {
-      signature = UtilityMethods.generateSignature(privateKey, getMessageData());
+      signature = UtilityMethods.generateSignature(privateKey, getPayload());
       signed = true;
     }
   }
 
+  /**
+   * Checks that the transaction was signed by its sender and that its hashID matches its content. A
+   * transaction cannot change once signed, so the result is remembered and a transaction passed
+   * from wallet to wallet is only verified once. It is not serialized: a deserialized transaction
+   * is verified again.
+   */
   public boolean verifySignature() {
-    String message = getMessageData();
-    return UtilityMethods.verifySignature(this.sender, this.signature, message);
+    Boolean valid = this.signatureValid;
+    if (valid == null) {
+      if (this.signature == null) {
+        // may still be signed later
+        return false;
+      }
+      valid =
+          computeHashID().equals(this.hashID)
+              && UtilityMethods.verifySignature(this.sender, this.signature, getPayload());
+      this.signatureValid = valid;
+    }
+    return valid;
+  }
+
+  private Hash256 computeHashID() {
+    return Hash256.sha256(getPayload());
   }
 
-  private String computeHashID() {
-    String message = getMessageData();
-    return UtilityMethods.messageDigestSHA256_toString(message);
+  // The bytes that are hashed into the hashID and signed, encoded once
+  private byte[] getPayload() {
+    byte[] p = this.payload;
+    if (p == null) {
+      PayloadEncoder e = encodePayload();
+      p = Arrays.copyOf(e.buffer(), e.size());
+      this.payload = p;
+    }
+    return p;
   }
 
-  private String getMessageData() {
-    StringBuilder sb = new StringBuilder();
-    sb.append(
-        UtilityMethods.getKeyString(sender)
-            + Long.toHexString(timestamp)
-            + Long.toString(mySeqNumber));
+  private PayloadEncoder encodePayload() {
+    PayloadEncoder e = PayloadEncoder.get();
+    e.writeByte(PayloadEncoder.VERSION).writeByte('T');
+    e.writeKey(getSenderId()).writeLong(timestamp).writeLong(mySeqNumber);
+    e.writeInt(receivers.length);
     for (int i = 0; i < receivers.length; i++) {
-      sb.append(UtilityMethods.getKeyString(receivers[i]) + Double.toHexString(fundsToTransfer[i]));
+      e.writeKey(getReceiverId(i)).writeDouble(fundsToTransfer[i]);
     }
+    e.writeInt(getNumberOfInputUTXOs());
     for (int i = 0; i < getNumberOfInputUTXOs(); i++) {
-      UTXO in = inputs.get(i);
-      sb.append(in.getHashID());
+      e.writeHash(inputs.get(i).getHashID());
+    }
+    return e;
+  }
+
+  public AccountId getSenderId() {
+    if (senderId == null) {
+      senderId = AccountId.of(sender);
+    }
+    return senderId;
+  }
+
+  private AccountId getReceiverId(int i) {
+    if (receiverIds == null) {
+      AccountId[] ids = new AccountId[receivers.length];
+      for (int j = 0; j < ids.length; j++) {
+        ids[j] = AccountId.of(receivers[j]);
+      }
+      receiverIds = ids;
     }
-    return sb.toString();
+    return receiverIds[i];
   }
 
   public double getTotalFundsToTransfer() {
@@ -100,7 +150,11 @@ public class Transaction implements Serializable {
     }
   }
 
+  // The outputs cannot change once the transaction is signed
   public boolean prepareOutputUTXOs() {
+    if (this.signed) {
+      return false;
+    }
     if (this.receivers.length != this.fundsToTransfer.length) {
       return false;
     }
@@ -3,21 +3,29 @@ package org.andruch;
 
 import java.io.Serializable;
 import java.security.PublicKey;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 @Getter
 public class UTXO implements Serializable {
   private static final long serialVersionUID = 1L;
-  private String hashID;
-  private String parentTransactionID;
+  private Hash256 hashID;
+  private Hash256 parentTransactionID;
   private PublicKey receiver;
   private PublicKey sender;
   private long timestamp;
   private double fundsTransferred;
   private long seqNumber = 0;
 
+  // Looked up from the keys when first needed, also after deserialization
+  @Getter(AccessLevel.NONE)
+  private transient AccountId senderId;
+
+  @Getter(AccessLevel.NONE)
+  private transient AccountId receiverId;
+
   public UTXO(
-      String parentTransactionID, PublicKey sender, PublicKey receiver, double fundsTransferred) {
+      Hash256 parentTransactionID, PublicKey sender, PublicKey receiver, double fundsTransferred) {
     this.seqNumber = UtilityMethods.getUniqueNumber();
     this.parentTransactionID = parentTransactionID;
     this.receiver = receiver;
@@ -27,15 +35,31 @@ public class UTXO implements Serializable {
     this.hashID = computeHashID();
   }
 
-  private String computeHashID() {
-    String message =
-        parentTransactionID
-            + UtilityMethods.getKeyString(sender)
-            + UtilityMethods.getKeyString(receiver)
-            + Double.toHexString(fundsTransferred)
-            + Long.toHexString(timestamp)
-            + Long.toHexString(seqNumber);
-    return UtilityMethods.messageDigestSHA256_toString(message);
+  public AccountId getSenderId() {
+    if (senderId == null) {
+      senderId = AccountId.of(sender);
+    }
+    return senderId;
+  }
+
+  public AccountId getReceiverId() {
+    if (receiverId == null) {
+      receiverId = AccountId.of(receiver);
+    }
+    return receiverId;
+  }
+
+  private Hash256 computeHashID() {
+    return PayloadEncoder.get()
+        .writeByte(PayloadEncoder.VERSION)
+        .writeByte('U')
+        .writeHash(parentTransactionID)
+        .writeKey(getSenderId())
+        .writeKey(getReceiverId())
+        .writeDouble(fundsTransferred)
+        .writeLong(timestamp)
+        .writeLong(seqNumber)
+        .sha256();
   }
 
   @Override
@@ -8,7 +8,7 @@ public class UTXOAsMiningReward extends UTXO {
   @Serial private static final long serialVersionUID = 1L;
 
   public UTXOAsMiningReward(
-      String parentTransactionID, PublicKey sender, PublicKey receiver, double fundsTransferred) {
+      Hash256 parentTransactionID, PublicKey sender, PublicKey receiver, double fundsTransferred) {
     super(parentTransactionID, sender, receiver, fundsTransferred);
   }
 
@@ -1,6 +1,7 @@
 /* Copyright © 2023 Andreas Börjesson AB */
 package org.andruch;
 
+import java.nio.ByteBuffer;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
@@ -8,7 +9,6 @@ import java.security.spec.KeySpec;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
-import java.util.Base64;
 import javax.crypto.*;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
@@ -22,116 +22,95 @@ public class UtilityMethods {
     return uniqueNumber++;
   }
 
-  /**
-   * The merkle tree could be a binary tree, or triple tree, or ... Here it is a binary tree model.
-   *
-   * <p>The input size could be of an even or odd number. So, I use a recursive algorithm to compute
-   * the merkle tree root hash
-   *
-   * @param hashes
-   * @return
-   */
-  public static String computeMerkleTreeRootHash(String[] hashes) {
-    return computeMerkleTreeRootHash(hashes, 0, hashes.length - 1);
+  // A 2048-bit RSA key pair, see SignatureScheme for the others
+  public static KeyPair generateKeyPair() {
+    return SignatureScheme.RSA.generateKeyPair();
   }
 
-  /**
-   * @param hashes
-   * @param from
-   * @param end
-   * @return
-   */
-  private static String computeMerkleTreeRootHash(String[] hashes, int from, int end) {
-    // there is only one string, then return this string
-    if (end - from + 1 == 1) {
-      return hashes[end];
-    } else if (end - from + 1 == 2) {
-      // compute the hashID from the two
-      return messageDigestSHA256_toString(hashes[from] + hashes[end]);
-    } else {
-      // we need continue divide the array into two parts
-      int c = (from + end) / 2;
-      String mesg =
-          computeMerkleTreeRootHash(hashes, from, c)
-              + computeMerkleTreeRootHash(hashes, c + 1, end);
-      return messageDigestSHA256_toString(mesg);
-    }
+  public static byte[] generateSignature(PrivateKey privateKey, String message) {
+    return generateSignature(privateKey, message.getBytes());
   }
 
-  public static KeyPair generateKeyPair() {
-    try {
-      KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
-      kpg.initialize(2048);
-      KeyPair keyPair = kpg.generateKeyPair();
-      return keyPair;
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
+  public static byte[] generateSignature(PrivateKey privateKey, byte[] message) {
+    return generateSignature(privateKey, message, 0, message.length);
   }
 
-  public static byte[] generateSignature(PrivateKey privateKey, String message) {
-    try {
-      Signature sig = Signature.getInstance("SHA256withRSA");
-      sig.initSign(privateKey);
-      sig.update(message.getBytes());
-      return sig.sign();
-    } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
-      throw new RuntimeException(e);
-    }
+  // Signs with the scheme of the private key
+  public static byte[] generateSignature(
+      PrivateKey privateKey, byte[] message, int offset, int length) {
+    return SignatureScheme.of(privateKey).sign(privateKey, message, offset, length);
   }
 
   public static boolean verifySignature(PublicKey publicKey, byte[] signature, String message) {
-    try {
-      Signature sig = Signature.getInstance("SHA256withRSA");
-      sig.initVerify(publicKey);
-      sig.update(message.getBytes());
-      return sig.verify(signature);
-    } catch (NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
-      throw new RuntimeException(e);
+    return verifySignature(publicKey, signature, message.getBytes());
+  }
+
+  public static boolean verifySignature(PublicKey publicKey, byte[] signature, byte[] message) {
+    return verifySignature(publicKey, signature, message, 0, message.length);
+  }
+
+  // Signatures already found valid in this JVM are not verified again, see SignatureCache
+  public static boolean verifySignature(
+      PublicKey publicKey, byte[] signature, byte[] message, int offset, int length) {
+    if (signature == null) {
+      return false;
+    }
+    return SignatureCache.global().verify(publicKey, signature, message, offset, length);
+  }
+
+  // Verifies against the remaining bytes of the buffer, without copying them into an array
+  public static boolean verifySignature(PublicKey publicKey, byte[] signature, ByteBuffer message) {
+    if (signature == null) {
+      return false;
     }
+    return SignatureCache.global().verify(publicKey, signature, message);
   }
 
   public static String getKeyString(Key key) {
+    if (key instanceof PublicKey publicKey) {
+      return AccountId.of(publicKey).getKeyString();
+    }
     // key.getEncoded() contains the actual key
-    return Base64.getEncoder().encodeToString(key.getEncoded());
+    return TextEncoding.toBase64(key.getEncoded());
   }
 
   public static boolean hashMeetsDifficultyLevel(String hash, int difficultyLevel) {
-    char[] c = hash.toCharArray();
-    for (int i = 0; i < difficultyLevel; i++) {
-      if (c[i] != '0') {
-        return false;
-      }
-    }
-    return true;
+    return TextEncoding.countLeadingZeroChars(hash) >= difficultyLevel;
+  }
+
+  /**
+   * Checks the proof of work directly on the digest, without building the binary string. It gives
+   * the same answer as hashMeetsDifficultyLevel(toBinaryString(hash), difficultyLevel).
+   */
+  public static boolean hashMeetsDifficultyLevel(byte[] hash, int difficultyLevel) {
+    return TextEncoding.countLeadingZeroBinaryChars(hash, 0, hash.length) >= difficultyLevel;
   }
 
+  /**
+   * The proof of work of a hash as this blockchain has always counted it: the number of '0'
+   * characters toBinaryString(hash) starts with. Every byte is shifted by 128 first, so this is not
+   * the number of leading zero bits of the digest itself: a digest starting with 0x80 counts 8, one
+   * starting with 0x00 counts 0.
+   */
+  public static int countLeadingZeroBinaryChars(byte[] hash) {
+    return TextEncoding.countLeadingZeroBinaryChars(hash, 0, hash.length);
+  }
+
+  // Every byte shifted by 128 to make it unsigned, then written as 8 '0'/'1' characters
   public static String toBinaryString(byte[] hash) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < hash.length; i++) {
-      // Transform a byte into an unsigned integer
-      int x = ((int) hash[i]) + 128;
-      StringBuilder s = new StringBuilder(Integer.toBinaryString(x));
-      while (s.length() < 8) {
-        s.insert(0, "0");
-      }
-      sb.append(s);
-    }
-    return sb.toString();
+    return TextEncoding.toBinaryString(hash);
   }
 
   public static byte[] messageDigestSHA256_toBytes(String message) {
-    try {
-      MessageDigest md = MessageDigest.getInstance("SHA-256");
-      md.update(message.getBytes());
-      return md.digest();
-    } catch (NoSuchAlgorithmException e) {
-      throw new RuntimeException(e);
-    }
+    return DigestService.sha256(message);
+  }
+
+  public static byte[] messageDigestSHA256_toBytes(byte[] message) {
+    return DigestService.sha256(message);
   }
 
   public static String messageDigestSHA256_toString(String message) {
-    return Base64.getEncoder().encodeToString(messageDigestSHA256_toBytes(message));
+    return TextEncoding.toBase64(messageDigestSHA256_toBytes(message));
   }
 
   public static long getTimeStamp() {
@@ -262,6 +241,15 @@ public class UtilityMethods {
     return b;
   }
 
+  public static byte[] longToBytes(long v) {
+    byte[] b = new byte[Long.BYTES];
+    for (int i = b.length - 1; i >= 0; i--) {
+      b[i] = (byte) (v & 0xFF);
+      v = v >> Byte.SIZE;
+    }
+    return b;
+  }
+
   public static int bytesToInt(byte[] b) {
     int v = 0;
     for (int i = 0; i < b.length; i++) {
@@ -0,0 +1,205 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Hashes one nonce per vector lane, so 4, 8 or 16 nonces (depending on the CPU) go through the
+ * SHA-256 rounds together. The header prefix is compressed once into a midstate; only the tail of
+ * the header, which holds the 8 nonce bytes and the padding, is compressed in the lanes.
+ *
+ * <p>Only loaded through {@link MiningKernel#best()}, which falls back to the scalar kernel when
+ * jdk.incubator.vector is missing.
+ */
+class VectorMiningKernel implements MiningKernel {
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+  // The layout of toBinaryString(): every byte of the digest is shifted by 128
+  private static final int BINARY_STRING_FLIP = 0x80808080;
+
+  VectorMiningKernel() {
+    if (SPECIES.length() < 4) {
+      throw new UnsupportedOperationException("no vector unit wide enough for 4 lanes");
+    }
+  }
+
+  @Override
+  public String getName() {
+    return "vector x" + SPECIES.length();
+  }
+
+  @Override
+  public NonceSearcher prepare(Block block) {
+    return new Searcher(block.computeHeaderPrefix(), block.getDifficultyLevel());
+  }
+
+  private static class Searcher implements NonceSearcher {
+    private final int lanes = SPECIES.length();
+    private final int difficultyLevel;
+    private final int[] midstate = Sha256.INITIAL_STATE.clone();
+    // Tail of the header (nonce bytes left at zero) with the SHA-256 padding, 1 or 2 blocks
+    private final int[] tailWords;
+    private final int nonceOffset;
+    private final int firstNonceWord;
+    private final int lastNonceWord;
+
+    // tailLanes[word * lanes + lane] is the message word of the tail for the nonce in that lane
+    private final int[] tailLanes;
+    private final int[] schedule = new int[64 * SPECIES.length()];
+    private final int[] state = new int[8 * SPECIES.length()];
+
+    Searcher(byte[] prefix, int difficultyLevel) {
+      this.difficultyLevel = difficultyLevel;
+      int fullBlocks = prefix.length / Sha256.BLOCK_SIZE;
+      for (int i = 0; i < fullBlocks; i++) {
+        Sha256.compress(midstate, prefix, i * Sha256.BLOCK_SIZE);
+      }
+      int rest = prefix.length - fullBlocks * Sha256.BLOCK_SIZE;
+      // rest of the prefix, 8 nonce bytes, 0x80 and the 8 byte message length in bits
+      int tailLength = rest + Long.BYTES + 1 + Long.BYTES <= Sha256.BLOCK_SIZE ? 64 : 128;
+      byte[] tail = new byte[tailLength];
+      System.arraycopy(prefix, fullBlocks * Sha256.BLOCK_SIZE, tail, 0, rest);
+      tail[rest + Long.BYTES] = (byte) 0x80;
+      long bitLength = (prefix.length + Long.BYTES) * 8L;
+      for (int i = 0; i < Long.BYTES; i++) {
+        tail[tailLength - 1 - i] = (byte) (bitLength >>> (8 * i));
+      }
+      this.tailWords = new int[tailLength / 4];
+      for (int b = 0; b < tailLength; b += Sha256.BLOCK_SIZE) {
+        System.arraycopy(Sha256.words(tail, b), 0, tailWords, b / 4, 16);
+      }
+      this.nonceOffset = rest;
+      this.firstNonceWord = rest / 4;
+      this.lastNonceWord = (rest + Long.BYTES - 1) / 4;
+      this.tailLanes = new int[tailWords.length * lanes];
+      for (int w = 0; w < tailWords.length; w++) {
+        for (int lane = 0; lane < lanes; lane++) {
+          tailLanes[w * lanes + lane] = tailWords[w];
+        }
+      }
+    }
+
+    @Override
+    public int search(long firstNonce, int count) {
+      // no digest has more zeros than bits, and hashAndCheck() reads one state word per 32 levels
+      if (difficultyLevel > Hash256.BINARY_LENGTH) {
+        return -1;
+      }
+      for (int base = 0; base < count; base += lanes) {
+        for (int lane = 0; lane < lanes; lane++) {
+          writeNonce(lane, firstNonce + base + lane);
+        }
+        VectorMask<Integer> found = hashAndCheck().and(SPECIES.indexInRange(0, count - base));
+        if (found.anyTrue()) {
+          return base + found.firstTrue();
+        }
+      }
+      return -1;
+    }
+
+    private void writeNonce(int lane, long nonce) {
+      for (int w = firstNonceWord; w <= lastNonceWord; w++) {
+        tailLanes[w * lanes + lane] = tailWords[w];
+      }
+      for (int i = 0; i < Long.BYTES; i++) {
+        int p = nonceOffset + i;
+        int b = (int) (nonce >>> (56 - 8 * i)) & 0xFF;
+        tailLanes[(p / 4) * lanes + lane] |= b << (24 - 8 * (p % 4));
+      }
+    }
+
+    // Compresses the tail blocks in every lane and checks the difficulty level on the digests
+    private VectorMask<Integer> hashAndCheck() {
+      for (int i = 0; i < 8; i++) {
+        IntVector.broadcast(SPECIES, midstate[i]).intoArray(state, i * lanes);
+      }
+      for (int block = 0; block < tailWords.length / 16; block++) {
+        compress(block * 16);
+      }
+      VectorMask<Integer> meets = SPECIES.maskAll(true);
+      int bits = difficultyLevel;
+      for (int i = 0; bits > 0; i++, bits -= 32) {
+        IntVector word =
+            IntVector.fromArray(SPECIES, state, i * lanes)
+                .lanewise(VectorOperators.XOR, BINARY_STRING_FLIP);
+        if (bits < 32) {
+          word = word.lanewise(VectorOperators.LSHR, 32 - bits);
+        }
+        meets = meets.and(word.compare(VectorOperators.EQ, 0));
+      }
+      return meets;
+    }
+
+    private void compress(int firstWord) {
+      System.arraycopy(tailLanes, firstWord * lanes, schedule, 0, 16 * lanes);
+      for (int t = 16; t < 64; t++) {
+        IntVector w15 = IntVector.fromArray(SPECIES, schedule, (t - 15) * lanes);
+        IntVector w2 = IntVector.fromArray(SPECIES, schedule, (t - 2) * lanes);
+        IntVector s0 =
+            w15.lanewise(VectorOperators.ROR, 7)
+                .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.ROR, 18))
+                .lanewise(VectorOperators.XOR, w15.lanewise(VectorOperators.LSHR, 3));
+        IntVector s1 =
+            w2.lanewise(VectorOperators.ROR, 17)
+                .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.ROR, 19))
+                .lanewise(VectorOperators.XOR, w2.lanewise(VectorOperators.LSHR, 10));
+        IntVector.fromArray(SPECIES, schedule, (t - 16) * lanes)
+            .add(s0)
+            .add(IntVector.fromArray(SPECIES, schedule, (t - 7) * lanes))
+            .add(s1)
+            .intoArray(schedule, t * lanes);
+      }
+      IntVector a = IntVector.fromArray(SPECIES, state, 0);
+      IntVector b = IntVector.fromArray(SPECIES, state, lanes);
+      IntVector c = IntVector.fromArray(SPECIES, state, 2 * lanes);
+      IntVector d = IntVector.fromArray(SPECIES, state, 3 * lanes);
+      IntVector e = IntVector.fromArray(SPECIES, state, 4 * lanes);
+      IntVector f = IntVector.fromArray(SPECIES, state, 5 * lanes);
+      IntVector g = IntVector.fromArray(SPECIES, state, 6 * lanes);
+      IntVector h = IntVector.fromArray(SPECIES, state, 7 * lanes);
+      for (int t = 0; t < 64; t++) {
+        IntVector s1 =
+            e.lanewise(VectorOperators.ROR, 6)
+                .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25));
+        IntVector ch =
+            e.and(f).lanewise(VectorOperators.XOR, g.lanewise(VectorOperators.AND_NOT, e));
+        IntVector temp1 =
+            h.add(s1)
+                .add(ch)
+                .add(Sha256.K[t])
+                .add(IntVector.fromArray(SPECIES, schedule, t * lanes));
+        IntVector s0 =
+            a.lanewise(VectorOperators.ROR, 2)
+                .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22));
+        IntVector maj =
+            a.and(b)
+                .lanewise(VectorOperators.XOR, a.and(c))
+                .lanewise(VectorOperators.XOR, b.and(c));
+        h = g;
+        g = f;
+        f = e;
+        e = d.add(temp1);
+        d = c;
+        c = b;
+        b = a;
+        a = temp1.add(s0.add(maj));
+      }
+      addToState(0, a);
+      addToState(1, b);
+      addToState(2, c);
+      addToState(3, d);
+      addToState(4, e);
+      addToState(5, f);
+      addToState(6, g);
+      addToState(7, h);
+    }
+
+    private void addToState(int i, IntVector v) {
+      IntVector.fromArray(SPECIES, state, i * lanes).add(v).intoArray(state, i * lanes);
+    }
+  }
+}
@@ -15,9 +15,16 @@ public class Wallet {
 
   private KeyPair keyPair;
   @Getter private String name;
+  // The scheme of the wallet's keys, the blockchains it signs for must use the same
+  @Getter private final SignatureScheme signatureScheme;
 
   public Wallet(String walletName, String password) {
+    this(walletName, password, SignatureScheme.RSA);
+  }
+
+  public Wallet(String walletName, String password, SignatureScheme scheme) {
     this.name = walletName;
+    this.signatureScheme = scheme;
     try {
       populateExistingWallet(walletName, password);
       System.out.println(
@@ -40,9 +47,20 @@ public class Wallet {
   // simply accepts the incoming ledger.
   // If the wallet already has a local ledger, then it ie necessary to compare the existing ledger
   // to the incoming one. The wallet only accepts the incoming ledger if it
-  // 1) is validated, 2) is longer than the existing one and 3) both the incoming one and local one
-  // have the same genesis block.
+  // 1) is validated, 2) has more work than the existing one and 3) both the incoming one and local
+  // one have the same genesis block, signature scheme and target block interval. A chain declaring
+  // a shorter interval would retarget its difficulty down to nothing.
   public synchronized boolean setLocalLedger(Blockchain ledger) {
+    // the wallet could neither spend nor verify anything on a chain of another scheme
+    if (ledger.getSignatureScheme() != this.signatureScheme) {
+      System.out.println(
+          this.getName()
+              + "] Warning: the incoming blockchain uses "
+              + ledger.getSignatureScheme()
+              + ", this wallet "
+              + this.signatureScheme);
+      return false;
+    }
     boolean isValid = Blockchain.validateBlockchain(ledger);
     if (!isValid) {
       System.out.println();
@@ -52,27 +70,28 @@ public class Wallet {
     }
     if (this.localLedger == null) {
       this.localLedger = ledger;
+      localLedgerTipChanged(ledger.getLastBlock());
       return true;
     } else {
-      if (ledger.size() > this.localLedger.size()
-          && ledger.getGenesisMiner().equals(this.localLedger.getGenesisMiner())) {
-        this.localLedger = ledger;
-        return true;
-      } else if (ledger.size() <= this.localLedger.size()) {
+      if (!this.localLedger.followsSameRules(ledger)) {
+        System.out.println(
+            this.getName()
+                + "] Warning: the incoming blockchain has a different genesis block or target block"
+                + " interval than current local one");
+        return false;
+      } else if (ledger.getTotalWork().compareTo(this.localLedger.getTotalWork()) <= 0) {
         System.out.println(
             this.getName()
-                + "] Warning: the incoming blockchain is no longer than current local one"
+                + "] Warning: the incoming blockchain has no more work than current local one"
                 + ", local size="
                 + this.localLedger.size()
                 + ", incoming size="
                 + ledger.size());
         return false;
       } else {
-        System.out.println(
-            this.getName()
-                + "] Warning: the incoming blockchain has a different genesis miner than current"
-                + " local one");
-        return false;
+        this.localLedger = ledger;
+        localLedgerTipChanged(ledger.getLastBlock());
+        return true;
       }
     }
   }
@@ -82,7 +101,7 @@ public class Wallet {
   }
 
   private void prepareWallet(String password) throws IOException {
-    this.keyPair = UtilityMethods.generateKeyPair();
+    this.keyPair = signatureScheme.generateKeyPair();
 
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     ObjectOutputStream oos = new ObjectOutputStream(baos);
@@ -92,8 +111,7 @@ public class Wallet {
     if (!f.exists()) {
       f.mkdir();
     }
-    FileOutputStream fos =
-        new FileOutputStream(KEY_LOCATION + "/" + getName().replaceAll(" ", "_") + "_keys");
+    FileOutputStream fos = new FileOutputStream(keyFile(getName()));
     fos.write(encrypted);
     fos.close();
     baos.close();
@@ -101,8 +119,7 @@ public class Wallet {
 
   private void populateExistingWallet(String walletName, String password)
       throws IOException, ClassNotFoundException {
-    FileInputStream fis =
-        new FileInputStream(Wallet.KEY_LOCATION + "/" + walletName.replaceAll(" ", "_") + "_keys");
+    FileInputStream fis = new FileInputStream(keyFile(walletName));
     byte[] bb = new byte[4096];
     int size = fis.read(bb);
     fis.close();
@@ -115,6 +132,15 @@ public class Wallet {
     this.keyPair = (KeyPair) ois.readObject();
   }
 
+  // RSA keys keep the file name they always had, so existing wallets are still found
+  private String keyFile(String walletName) {
+    String suffix =
+        signatureScheme == SignatureScheme.RSA
+            ? "_keys"
+            : "_" + signatureScheme.name().toLowerCase() + "_keys";
+    return KEY_LOCATION + "/" + walletName.replaceAll(" ", "_") + suffix;
+  }
+
   public Transaction transferFund(PublicKey receiver, double fundToTransfer) {
     PublicKey[] receivers = new PublicKey[1];
     double[] funds = new double[1];
@@ -169,27 +195,30 @@ public class Wallet {
       Blockchain max = this.localLedger;
       for (int i = 0; i < chains.size(); i++) {
         Blockchain bc = chains.get(i);
-        if (bc.getGenesisMiner().equals(this.localLedger.getGenesisMiner())
-            && bc.size() > max.size()
+        if (this.localLedger.followsSameRules(bc)
+            && bc.getTotalWork().compareTo(max.getTotalWork()) > 0
             && Blockchain.validateBlockchain(bc)) {
           max = bc;
         }
       }
-      this.localLedger = max; // it is possible that nothing changed
+      if (max != this.localLedger) {
+        this.localLedger = max;
+        localLedgerTipChanged(max.getLastBlock());
+      }
       return true;
     } else {
       Blockchain max = null;
-      int currentLength = 0;
       for (int i = 0; i < chains.size(); i++) {
         Blockchain bc = chains.get(i);
-        boolean b = Blockchain.validateBlockchain(bc);
-        if (b && bc.size() > currentLength) {
+        if (bc.getSignatureScheme() == this.signatureScheme
+            && (max == null || bc.getTotalWork().compareTo(max.getTotalWork()) > 0)
+            && Blockchain.validateBlockchain(bc)) {
           max = bc;
-          currentLength = max.size();
         }
       }
       if (max != null) {
         this.localLedger = max;
+        localLedgerTipChanged(max.getLastBlock());
         return true;
       } else {
         return false;
@@ -198,12 +227,17 @@ public class Wallet {
   }
 
   public synchronized boolean updateLocalLedger(Block block) {
-    if (verifyGuestBlock(block)) {
-      return this.localLedger.addBlock(block);
+    if (verifyGuestBlock(block) && this.localLedger.addBlock(block)) {
+      localLedgerTipChanged(block);
+      return true;
     }
     return false;
   }
 
+  // Called every time the last block of the local ledger changes. Miners use it to stop mining
+  // blocks that can no longer be added to the ledger.
+  protected void localLedgerTipChanged(Block lastBlock) {}
+
   public boolean verifyGuestBlock(Block block) {
     return this.verifyGuestBlock(block, this.getLocalLedger());
   }
@@ -218,20 +252,64 @@ public class Wallet {
       System.out.println("\tWarning: block(" + block.getHashID() + ") signature tampered");
       return false;
     }
+    // the keys must be of the scheme the blockchain uses
+    if (!ledger.usesSignatureScheme(block)) {
+      System.out.println(
+          "\tWarning: block("
+              + block.getHashID()
+              + ") is not signed with "
+              + ledger.getSignatureScheme()
+              + " keys");
+      return false;
+    }
     // got to verify the proof of work, too
-    if (!UtilityMethods.hashMeetsDifficultyLevel(block.getHashID(), block.getDifficultyLevel())
-        || !block.computeHashID().equals(block.getHashID())) {
+    if (!Hash256.of(block.computeHash()).equals(block.getHashID())
+        || !block.getHashID().meetsDifficultyLevel(block.getDifficultyLevel())) {
       System.out.println("\tWarning: block(" + block.getHashID() + ") mining is not successful!");
       return false;
     }
 
+    // the miner does not get to choose how hard the block is
+    if (block.getDifficultyLevel() != ledger.getNextDifficultyLevel()) {
+      System.out.println(
+          "\tWarning: block("
+              + block.getHashID()
+              + ") difficulty level "
+              + block.getDifficultyLevel()
+              + " should be "
+              + ledger.getNextDifficultyLevel());
+      return false;
+    }
+
     // making sure that this block is build upon last block, i.e, verify its hashID
     if (!ledger.getLastBlock().getHashID().equals(block.getPreviousBlockHashID())) {
       System.out.println("\tWarning: block(" + block.getHashID() + ") is not linked to last block");
       return false;
     }
 
-    // checking all the transactions are valid
+    // the next difficulty level is derived from this timestamp, so it must be plausible
+    if (!Blockchain.hasValidTimestamp(block, ledger.getLastBlock())) {
+      System.out.println(
+          "\tWarning: block("
+              + block.getHashID()
+              + ") timestamp "
+              + block.getTimestamp()
+              + " is not after the last block's or too far in the future");
+      return false;
+    }
+
+    // checking all the transactions are valid. The signatures are verified in parallel first, the
+    // check below then finds them already verified.
+    int invalid = BatchSignatureVerifier.findFirstInvalid(block.getTransactions());
+    if (invalid >= 0) {
+      System.out.println(
+          "\tWarning: block("
+              + block.getHashID()
+              + ") transaction "
+              + invalid
+              + " is invalid because of signature being tampered.");
+      return false;
+    }
     int size = block.getNumberOfTransactions();
     for (int i = 0; i < size; i++) {
       Transaction T = block.getTransaction(i);
@@ -0,0 +1,94 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import org.andruch.BatchSignatureVerifier;
+import org.andruch.Hash256;
+import org.andruch.SignatureCache;
+import org.andruch.Transaction;
+import org.andruch.UTXO;
+import org.andruch.UtilityMethods;
+
+// Measures how long the signatures of a full block take to verify, one after another and with the
+// BatchSignatureVerifier. Every round works on freshly deserialized transactions with an empty
+// signature cache, as a wallet receiving the block from another node would.
+public class TestBatchVerification {
+  public static void main(String[] args) throws Exception {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    KeyPair[] senders = new KeyPair[4];
+    for (int i = 0; i < senders.length; i++) {
+      senders[i] = UtilityMethods.generateKeyPair();
+    }
+    ArrayList<Transaction> block = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      block.add(newTransaction(senders[i % senders.length], senders[i % senders.length]));
+    }
+    byte[] serialized = serialize(block);
+
+    System.out.println(
+        size
+            + " transactions on "
+            + Runtime.getRuntime().availableProcessors()
+            + " cores, the first rounds warm up:");
+    for (int round = 0; round < 5; round++) {
+      List<Transaction> copy = deserialize(serialized);
+      SignatureCache.global().clear();
+      long start = System.nanoTime();
+      for (Transaction t : copy) {
+        t.verifySignature();
+      }
+      long sequential = System.nanoTime() - start;
+
+      copy = deserialize(serialized);
+      SignatureCache.global().clear();
+      start = System.nanoTime();
+      int invalid = BatchSignatureVerifier.findFirstInvalid(copy);
+      long batch = System.nanoTime() - start;
+      System.out.printf(
+          "one by one %6.2f ms, batch %6.2f ms, first invalid %d%n",
+          sequential / 1e6, batch / 1e6, invalid);
+    }
+
+    // a transaction signed by somebody else than its sender
+    int bad = size * 3 / 8;
+    List<Transaction> tampered = new ArrayList<>(block);
+    tampered.set(bad, newTransaction(senders[0], senders[1]));
+    System.out.println(
+        "transaction "
+            + bad
+            + " signed with the wrong key, first invalid reported: "
+            + BatchSignatureVerifier.findFirstInvalid(tampered));
+  }
+
+  private static Transaction newTransaction(KeyPair sender, KeyPair signer) {
+    ArrayList<UTXO> inputs = new ArrayList<>();
+    inputs.add(new UTXO(Hash256.ZERO, sender.getPublic(), sender.getPublic(), 100));
+    Transaction t = new Transaction(sender.getPublic(), sender.getPublic(), 10, inputs);
+    t.prepareOutputUTXOs();
+    t.signTheTransaction(signer.getPrivate());
+    return t;
+  }
+
+  private static byte[] serialize(ArrayList<Transaction> transactions) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(transactions);
+    }
+    return bytes.toByteArray();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Transaction> deserialize(byte[] serialized)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+      return (List<Transaction>) in.readObject();
+    }
+  }
+}
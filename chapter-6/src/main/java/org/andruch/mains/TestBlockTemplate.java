@@ -0,0 +1,64 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.andruch.Block;
+import org.andruch.Blockchain;
+import org.andruch.Hash256;
+import org.andruch.Miner;
+import org.andruch.Transaction;
+import org.andruch.UTXO;
+import org.andruch.Wallet;
+
+// Miner A builds its blocks out of a pool of pending transactions. The pool contains a duplicate
+// and two transactions spending the same UTXOs, only one of which can go into the block.
+public class TestBlockTemplate {
+  public static void main(String[] args) {
+    int difficultyLevel = 12;
+    Miner genesisMiner = new Miner("genesis", "genesis");
+    Block genesisBlock = new Block(Hash256.ZERO, difficultyLevel, genesisMiner.getPublicKey());
+    ArrayList<UTXO> inputs = new ArrayList<>();
+    inputs.add(
+        new UTXO(Hash256.ZERO, genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10001.0));
+    Transaction gt =
+        new Transaction(genesisMiner.getPublicKey(), genesisMiner.getPublicKey(), 10000.0, inputs);
+    gt.prepareOutputUTXOs();
+    gt.signTheTransaction(genesisMiner.getPrivateKey());
+    genesisBlock.addTransaction(gt, genesisMiner.getPublicKey());
+    genesisMiner.mineBlock(genesisBlock);
+    Blockchain ledger = new Blockchain(genesisBlock);
+    genesisMiner.setLocalLedger(ledger);
+
+    Miner A = new Miner("A", "A");
+    Wallet B = new Wallet("B", "B");
+    A.setLocalLedger(ledger.copy_NotDeepCopy());
+    B.setLocalLedger(ledger.copy_NotDeepCopy());
+
+    // both transfers are made from the same unspent UTXOs
+    Transaction t1 = genesisMiner.transferFund(B.getPublicKey(), 500);
+    Transaction t2 = genesisMiner.transferFund(A.getPublicKey(), 300);
+    List<Transaction> pending = List.of(t1, t2, t1);
+
+    Block b2 = A.createBlockTemplate(pending);
+    System.out.println(
+        "A built block b2 with "
+            + b2.getNumberOfTransactions()
+            + " of "
+            + pending.size()
+            + " pending transactions, t1 included: "
+            + (b2.getNumberOfTransactions() > 0 && b2.getTransaction(0).equals(t1))
+            + ", reward: "
+            + (b2.getRewardTransaction() != null));
+    A.mineBlock(b2);
+    System.out.println("B accepted b2: " + B.updateLocalLedger(b2));
+    A.updateLocalLedger(b2);
+    genesisMiner.updateLocalLedger(b2);
+
+    // t1 is now in the ledger and t2 spends what t1 spent, neither can be added again
+    Block b3 = A.createBlockTemplate(pending);
+    System.out.println(
+        "A built block b3 with " + b3.getNumberOfTransactions() + " pending transactions");
+    System.out.println("B's balance: " + B.getCurrentBalance(B.getLocalLedger()));
+  }
+}
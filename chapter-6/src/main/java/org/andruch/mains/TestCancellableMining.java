@@ -0,0 +1,56 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import org.andruch.Block;
+import org.andruch.Blockchain;
+import org.andruch.Hash256;
+import org.andruch.Miner;
+import org.andruch.MiningTask;
+
+// Miner A mines a hard block in the background while miner C quickly mines one at the level the
+// ledger requires. Once C's block is accepted by A, A stops hashing on its now stale block and
+// rebuilds it on C's block, at the level the ledger requires.
+public class TestCancellableMining {
+  public static void main(String[] args) throws InterruptedException {
+    int easyLevel = 12;
+    int hardLevel = 30;
+    Miner genesisMiner = new Miner("genesis", "genesis");
+    Block genesisBlock = new Block(Hash256.ZERO, easyLevel, genesisMiner.getPublicKey());
+    genesisMiner.generateRewardTransaction(genesisBlock);
+    genesisMiner.mineBlock(genesisBlock);
+    Blockchain ledger = new Blockchain(genesisBlock);
+
+    Miner A = new Miner("A", "A");
+    Miner C = new Miner("C", "C");
+    A.setLocalLedger(ledger.copy_NotDeepCopy());
+    C.setLocalLedger(ledger.copy_NotDeepCopy());
+
+    // far harder than the ledger allows, so that C surely wins; no ledger would accept this block,
+    // but A abandons it long before it could be mined
+    Block hard = new Block(genesisBlock.getHashID(), hardLevel, A.getPublicKey());
+    A.generateRewardTransaction(hard);
+    MiningTask task = A.mineBlockAsync(hard);
+    System.out.println("A is mining a block with difficulty level " + hardLevel);
+
+    Block easy = C.createNewBlock(C.getLocalLedger());
+    C.generateRewardTransaction(easy);
+    C.mineBlock(easy);
+    System.out.println("C accepted its own block: " + C.updateLocalLedger(easy));
+    System.out.println(
+        "C mined a block with difficulty level " + easy.getDifficultyLevel() + ", sending it to A");
+    System.out.println("A accepted C's block: " + A.updateLocalLedger(easy));
+
+    // give the task a moment to stop and rebuild its block
+    Thread.sleep(500);
+    System.out.println(
+        "A's block is now built on C's block: "
+            + task.getBlock().getPreviousBlockHashID().equals(easy.getHashID()));
+    task.cancel();
+    System.out.println("A's task mined a block: " + task.get());
+
+    System.out.println("abandoned templates:  " + A.getAbandonedTemplates());
+    System.out.println("stale hashes:         " + A.getStaleHashes());
+    System.out.println("stale hashing time:   " + A.getStaleHashingMillis() + " ms");
+    System.out.println("stop latency:         " + A.getStopLatencyMillis() + " ms");
+  }
+}
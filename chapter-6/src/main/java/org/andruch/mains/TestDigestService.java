@@ -0,0 +1,101 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.andruch.DigestService;
+import org.andruch.UtilityMethods;
+
+// Compares the DigestService with the previous way of hashing, which looked up a new MessageDigest
+// and copied the string into a new byte array on every call. The messages have the sizes of a
+// merkle node (two hashIDs) and of a UTXO (two public keys and a few numbers).
+// JMH is not available to this project, so this is a plain timed loop with a warm up round.
+public class TestDigestService {
+  public static void main(String[] args) throws InterruptedException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    KeyPair a = UtilityMethods.generateKeyPair();
+    KeyPair b = UtilityMethods.generateKeyPair();
+    String hashID = UtilityMethods.messageDigestSHA256_toString("hashID");
+    String merkleNode = hashID + hashID;
+    String utxo =
+        hashID
+            + UtilityMethods.getKeyString(a.getPublic())
+            + UtilityMethods.getKeyString(b.getPublic())
+            + Double.toHexString(100.0)
+            + Long.toHexString(UtilityMethods.getTimeStamp());
+
+    for (String message : new String[] {merkleNode, utxo}) {
+      if (!Arrays.equals(getInstanceEveryCall(message), DigestService.sha256(message))) {
+        throw new IllegalStateException("the digests differ");
+      }
+      byte[] bytes = message.getBytes();
+      System.out.println("message of " + message.length() + " characters:");
+      for (int round = 0; round < 2; round++) {
+        // the first round warms up
+        boolean print = round == 1;
+        measure("  getInstance every call", iterations, print, () -> getInstanceEveryCall(message));
+        measure("  DigestService, String ", iterations, print, () -> DigestService.sha256(message));
+        measure("  DigestService, byte[] ", iterations, print, () -> DigestService.sha256(bytes));
+      }
+    }
+
+    int threads = Runtime.getRuntime().availableProcessors();
+    System.out.println("message of " + utxo.length() + " characters on " + threads + " threads:");
+    for (int round = 0; round < 2; round++) {
+      boolean print = round == 1;
+      measureConcurrently(
+          "  getInstance every call", threads, iterations, print, () -> getInstanceEveryCall(utxo));
+      measureConcurrently(
+          "  DigestService         ", threads, iterations, print, () -> DigestService.sha256(utxo));
+    }
+  }
+
+  private static byte[] getInstanceEveryCall(String message) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      md.update(message.getBytes());
+      return md.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private interface Hashing {
+    byte[] hash();
+  }
+
+  private static int blackhole = 0;
+
+  private static void measure(String name, int iterations, boolean print, Hashing hashing) {
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      blackhole += hashing.hash()[0];
+    }
+    long nanos = System.nanoTime() - start;
+    if (print) {
+      System.out.printf("%s: %7.1f ns/hash%n", name, (double) nanos / iterations);
+    }
+  }
+
+  private static void measureConcurrently(
+      String name, int threads, int iterations, boolean print, Hashing hashing)
+      throws InterruptedException {
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      workers.add(new Thread(() -> measure(name, iterations / threads, false, hashing)));
+    }
+    long start = System.nanoTime();
+    workers.forEach(Thread::start);
+    for (Thread w : workers) {
+      w.join();
+    }
+    long nanos = System.nanoTime() - start;
+    if (print) {
+      System.out.printf("%s: %12.0f hashes/s%n", name, iterations * 1e9 / nanos);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.util.Random;
+import org.andruch.Hash256;
+import org.andruch.TextEncoding;
+import org.andruch.UtilityMethods;
+
+// Checks that the String hashIDs of the time before Hash256, the Base64 IDs of transactions and
+// UTXOs and the binary IDs of blocks, convert to the Hash256 of the same digest.
+public class TestLegacyIds {
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      String message = Long.toHexString(random.nextLong()) + i;
+      Hash256 expected = Hash256.sha256(message);
+      // how transactions and UTXOs made their hashIDs
+      String transactionID = UtilityMethods.messageDigestSHA256_toString(message);
+      // how blocks made theirs
+      String blockID =
+          TextEncoding.toBinaryString(UtilityMethods.messageDigestSHA256_toBytes(message));
+      if (!expected.equals(Hash256.fromLegacyId(transactionID))
+          || !expected.equals(Hash256.fromLegacyId(blockID))
+          || !blockID.equals(expected.toBinaryString())) {
+        throw new IllegalStateException("wrong conversion of " + transactionID + " / " + blockID);
+      }
+    }
+    System.out.println("10000 legacy transaction and block IDs convert to their Hash256");
+    try {
+      Hash256.fromLegacyId("not an ID");
+      System.out.println("an invalid ID was converted");
+    } catch (IllegalArgumentException e) {
+      System.out.println("an invalid ID is rejected: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.andruch.Hash256;
+import org.andruch.MerkleAccumulator;
+import org.andruch.MerkleTree;
+
+// Checks that the merkle root kept by a MerkleAccumulator is the root MerkleTree builds after every
+// append, with and without an extra last leaf such as a reward transaction. Then compares
+// assembling a block one leaf at a time and reading its root after every leaf, with the
+// accumulator and with the root computed again from all the leaves.
+// JMH is not available to this project, so the times come from plain timed loops after a warm up.
+public class TestMerkleAccumulator {
+  public static void main(String[] args) {
+    int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    Random random = new Random(42);
+    List<Hash256> leaves = new ArrayList<>();
+    for (int i = 0; i < Math.max(size, 3000); i++) {
+      leaves.add(randomHash(random));
+    }
+    Hash256 reward = randomHash(random);
+    MerkleAccumulator accumulator = new MerkleAccumulator();
+    List<Hash256> withReward = new ArrayList<>();
+    for (int i = 0; i <= 3000; i++) {
+      List<Hash256> some = leaves.subList(0, i);
+      withReward.clear();
+      withReward.addAll(some);
+      withReward.add(reward);
+      if (!accumulator.getRoot().equals(MerkleTree.computeRoot(some))
+          || !accumulator.getRoot(reward).equals(MerkleTree.computeRoot(withReward))) {
+        throw new IllegalStateException("wrong root after " + i + " leaves");
+      }
+      if (i < 3000) {
+        accumulator.append(leaves.get(i));
+      }
+    }
+    System.out.println("the accumulated roots of 0 to 3000 leaves are the merkle tree roots");
+
+    for (int round = 0; round < 3; round++) {
+      long start = System.nanoTime();
+      MerkleAccumulator streaming = new MerkleAccumulator();
+      long sink = 0;
+      for (int i = 0; i < size; i++) {
+        streaming.append(leaves.get(i));
+        sink += streaming.getRoot(reward).hashCode();
+      }
+      double incremental = (System.nanoTime() - start) / 1e3 / size;
+
+      start = System.nanoTime();
+      for (int i = 0; i < size; i++) {
+        withReward.clear();
+        withReward.addAll(leaves.subList(0, i + 1));
+        withReward.add(reward);
+        sink -= MerkleTree.computeRoot(withReward).hashCode();
+      }
+      double rebuilt = (System.nanoTime() - start) / 1e3 / size;
+      System.out.printf(
+          "%d leaves, append and read the root: accumulator %.2f us, rebuilt %.2f us per leaf%s%n",
+          size, incremental, rebuilt, sink == 0 ? "" : " (roots differ)");
+    }
+  }
+
+  private static Hash256 randomHash(Random random) {
+    byte[] digest = new byte[Hash256.LENGTH];
+    random.nextBytes(digest);
+    return Hash256.of(digest);
+  }
+}
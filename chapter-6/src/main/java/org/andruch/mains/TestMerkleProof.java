@@ -0,0 +1,121 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.andruch.Block;
+import org.andruch.Hash256;
+import org.andruch.MerkleProof;
+import org.andruch.MerkleTree;
+import org.andruch.Miner;
+import org.andruch.Transaction;
+import org.andruch.UTXO;
+
+// Checks that every leaf of merkle trees of 1 to 300 leaves has a proof that verifies, and that
+// tampered proofs, or proofs of an inner node as a leaf, do not. Then proves a transaction of a
+// mined block against the block's merkle
+// root only, and compares the size of the proof with the size of the block.
+public class TestMerkleProof {
+  public static void main(String[] args) throws IOException {
+    Random random = new Random(42);
+    Hash256 other = randomHash(random);
+    for (int size = 1; size <= 300; size++) {
+      List<Hash256> leaves = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+        leaves.add(randomHash(random));
+      }
+      MerkleTree tree = MerkleTree.build(leaves);
+      Hash256 root = tree.getRoot();
+      for (int i = 0; i < size; i++) {
+        MerkleProof proof = tree.getProof(i);
+        boolean ok =
+            proof.verify(leaves.get(i), root)
+                && !proof.verify(other, root)
+                && !proof.verify(leaves.get(i), other);
+        if (!ok) {
+          throw new IllegalStateException("proof of leaf " + i + " of " + size);
+        }
+      }
+    }
+    System.out.println("the proofs of every leaf of 1 to 300 leaves verify, tampered ones do not");
+
+    // a proof over the two inner nodes of a tree of 4 leaves, as if they were its transactions
+    List<Hash256> four = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      four.add(randomHash(random));
+    }
+    MerkleTree tree4 = MerkleTree.build(four);
+    List<Hash256> innerNodes = List.of(tree4.getNode(2, 0), tree4.getNode(2, 1));
+    System.out.println(
+        "an inner node proven as a transaction: "
+            + MerkleTree.build(innerNodes).getProof(0).verify(innerNodes.get(0), tree4.getRoot()));
+
+    List<Hash256> leaves = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      leaves.add(randomHash(random));
+    }
+    MerkleTree tree = MerkleTree.build(leaves);
+    MerkleProof proof = tree.getProof(4321);
+    int rounds = 100_000;
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      if (!proof.verify(leaves.get(4321), tree.getRoot())) {
+        throw new IllegalStateException("proof of leaf 4321");
+      }
+    }
+    System.out.printf(
+        "a proof in a tree of 10000 leaves has %d hashes and verifies in %.2f us%n",
+        proof.size(), (System.nanoTime() - start) / 1e3 / rounds);
+
+    // a light wallet only has the merkle root of the block
+    Miner miner = new Miner("genesis", "genesis");
+    Block block = new Block(Hash256.ZERO, 12, miner.getPublicKey());
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      ArrayList<UTXO> inputs = new ArrayList<>();
+      inputs.add(new UTXO(Hash256.ZERO, miner.getPublicKey(), miner.getPublicKey(), 100 + i));
+      Transaction t = new Transaction(miner.getPublicKey(), miner.getPublicKey(), 10, inputs);
+      t.prepareOutputUTXOs();
+      t.signTheTransaction(miner.getPrivateKey());
+      block.addTransaction(t, miner.getPublicKey());
+      transactions.add(t);
+    }
+    miner.generateRewardTransaction(block);
+    miner.mineBlock(block);
+    Hash256 merkleRoot = block.getMerkleRoot();
+    Transaction payment = transactions.get(13);
+    MerkleProof paymentProof = block.getMerkleProof(payment);
+    MerkleProof rewardProof = block.getMerkleProof(block.getRewardTransaction());
+    System.out.println(
+        "transaction 13 proven in the block: "
+            + paymentProof.verify(payment.getHashID(), merkleRoot)
+            + ", reward transaction proven: "
+            + rewardProof.verify(block.getRewardTransaction().getHashID(), merkleRoot)
+            + ", transaction 13 proven with the proof of transaction 12: "
+            + block.getMerkleProof(transactions.get(12)).verify(payment.getHashID(), merkleRoot));
+    System.out.println(
+        "proof: "
+            + serializedSize(paymentProof)
+            + " bytes, block: "
+            + serializedSize(block)
+            + " bytes");
+  }
+
+  private static Hash256 randomHash(Random random) {
+    byte[] digest = new byte[Hash256.LENGTH];
+    random.nextBytes(digest);
+    return Hash256.of(digest);
+  }
+
+  private static int serializedSize(Object o) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(o);
+    }
+    return bytes.size();
+  }
+}
@@ -0,0 +1,107 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.andruch.Block;
+import org.andruch.Blockchain;
+import org.andruch.Hash256;
+import org.andruch.MerkleTree;
+import org.andruch.Miner;
+import org.andruch.Transaction;
+import org.andruch.UTXO;
+
+// Checks that the merkle root a block caches follows its transactions as they are added and
+// deleted, then measures validateBlockchain() on a block of 100 transactions just received from
+// another node, the first time (the merkle root is computed) and the following times (it is not).
+public class TestMerkleRootCache {
+  public static void main(String[] args) throws Exception {
+    Miner miner = new Miner("genesis", "genesis");
+    Block block = new Block(Hash256.ZERO, 12, miner.getPublicKey());
+    List<Transaction> transactions = new ArrayList<>();
+    for (int i = 0; i < Block.TRANSACTION_UPPER_LIMIT; i++) {
+      transactions.add(newTransaction(miner, 100 + i));
+    }
+    Hash256 empty = block.getMerkleRoot();
+    for (Transaction t : transactions) {
+      block.addTransaction(t, miner.getPublicKey());
+      check(block, transactions.subList(0, block.getNumberOfTransactions()), null);
+    }
+    block.deleteTransaction(transactions.get(7), miner.getPublicKey());
+    block.deleteTransaction(0, miner.getPublicKey());
+    List<Transaction> left = new ArrayList<>(transactions);
+    left.remove(7);
+    left.remove(0);
+    check(block, left, null);
+    miner.generateRewardTransaction(block);
+    check(block, left, block.getRewardTransaction());
+    System.out.println(
+        "the cached merkle root follows additions, deletions and the reward, empty block: "
+            + empty.equals(Hash256.ZERO));
+    block.addTransaction(transactions.get(0), miner.getPublicKey());
+    block.addTransaction(transactions.get(7), miner.getPublicKey());
+    miner.mineBlock(block);
+
+    byte[] serialized = serialize(new Blockchain(block));
+    int rounds = 2000;
+    long first = 0;
+    long again = 0;
+    for (int round = 0; round < rounds; round++) {
+      Blockchain received = deserialize(serialized);
+      long start = System.nanoTime();
+      boolean valid = Blockchain.validateBlockchain(received);
+      first += System.nanoTime() - start;
+      start = System.nanoTime();
+      valid &= Blockchain.validateBlockchain(received);
+      again += System.nanoTime() - start;
+      if (!valid) {
+        throw new IllegalStateException("the blockchain is not valid");
+      }
+    }
+    System.out.printf(
+        "validateBlockchain() of a block of %d transactions: first %.1f us, again %.1f us%n",
+        block.getNumberOfTransactions(), first / 1e3 / rounds, again / 1e3 / rounds);
+  }
+
+  private static void check(Block block, List<Transaction> transactions, Transaction reward) {
+    List<Hash256> leaves = new ArrayList<>();
+    for (Transaction t : transactions) {
+      leaves.add(t.getHashID());
+    }
+    if (reward != null) {
+      leaves.add(reward.getHashID());
+    }
+    if (!block.getMerkleRoot().equals(MerkleTree.build(leaves).getRoot())) {
+      throw new IllegalStateException("stale merkle root with " + leaves.size() + " leaves");
+    }
+  }
+
+  private static Transaction newTransaction(Miner miner, double amount) {
+    ArrayList<UTXO> inputs = new ArrayList<>();
+    inputs.add(new UTXO(Hash256.ZERO, miner.getPublicKey(), miner.getPublicKey(), amount));
+    Transaction t = new Transaction(miner.getPublicKey(), miner.getPublicKey(), 10, inputs);
+    t.prepareOutputUTXOs();
+    t.signTheTransaction(miner.getPrivateKey());
+    return t;
+  }
+
+  private static byte[] serialize(Blockchain ledger) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(ledger);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Blockchain deserialize(byte[] serialized)
+      throws IOException, ClassNotFoundException {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+      return (Blockchain) in.readObject();
+    }
+  }
+}
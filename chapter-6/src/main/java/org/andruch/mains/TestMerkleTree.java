@@ -0,0 +1,97 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.andruch.DigestService;
+import org.andruch.Hash256;
+import org.andruch.MerkleTree;
+
+// Checks the merkle roots of MerkleTree against a plain level by level definition, then compares
+// the time to compute the root of a block of 1 to 10,000 transactions with that definition, which
+// makes a list and a Hash256 per node, MerkleTree.build() and MerkleTree.computeRoot().
+// JMH is not available to this project, so the times come from plain timed loops after a warm up.
+public class TestMerkleTree {
+  private static final int[] SIZES = {1, 2, 3, 10, 100, 1_000, 10_000};
+
+  // Keeps the JIT from dropping the measured work
+  private static long sink;
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    for (int size = 0; size <= 300; size++) {
+      List<Hash256> leaves = randomLeaves(random, size);
+      Hash256 expected = size == 0 ? Hash256.ZERO : reference(leaves);
+      if (!expected.equals(MerkleTree.build(leaves).getRoot())
+          || !expected.equals(MerkleTree.computeRoot(leaves))) {
+        throw new IllegalStateException("wrong merkle root for " + size + " leaves");
+      }
+    }
+    System.out.println("the roots of 0 to 300 leaves are right");
+
+    System.out.printf(
+        "%8s %16s %16s %16s%n", "leaves", "reference us", "build() us", "computeRoot() us");
+    for (int round = 0; round < 2; round++) {
+      for (int size : SIZES) {
+        List<Hash256> leaves = randomLeaves(random, size);
+        int repeat = Math.max(5, 200_000 / size);
+        long start = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+          sink += reference(leaves).hashCode();
+        }
+        double byReference = (System.nanoTime() - start) / 1e3 / repeat;
+        start = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+          sink += MerkleTree.build(leaves).getRoot().hashCode();
+        }
+        double build = (System.nanoTime() - start) / 1e3 / repeat;
+        start = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+          sink += MerkleTree.computeRoot(leaves).hashCode();
+        }
+        double root = (System.nanoTime() - start) / 1e3 / repeat;
+        if (round > 0) {
+          System.out.printf("%8d %16.2f %16.2f %16.2f%n", size, byReference, build, root);
+        }
+      }
+    }
+    System.out.println(sink == 42 ? "" : "done");
+  }
+
+  private static List<Hash256> randomLeaves(Random random, int size) {
+    List<Hash256> leaves = new ArrayList<>(size);
+    byte[] digest = new byte[Hash256.LENGTH];
+    for (int i = 0; i < size; i++) {
+      random.nextBytes(digest);
+      leaves.add(Hash256.of(digest));
+    }
+    return leaves;
+  }
+
+  // Hashes the leaves with a 0x00 prefix, then pairs the nodes of a level with a 0x01 prefix,
+  // carrying an odd last node up, until one is left
+  private static Hash256 reference(List<Hash256> leaves) {
+    List<Hash256> level = new ArrayList<>();
+    for (Hash256 leaf : leaves) {
+      byte[] prefixed = new byte[1 + Hash256.LENGTH];
+      leaf.writeTo(prefixed, 1);
+      level.add(Hash256.of(DigestService.sha256(prefixed)));
+    }
+    while (level.size() > 1) {
+      List<Hash256> parents = new ArrayList<>();
+      for (int i = 0; i + 1 < level.size(); i += 2) {
+        byte[] pair = new byte[1 + 2 * Hash256.LENGTH];
+        pair[0] = 1;
+        level.get(i).writeTo(pair, 1);
+        level.get(i + 1).writeTo(pair, 1 + Hash256.LENGTH);
+        parents.add(Hash256.of(DigestService.sha256(pair)));
+      }
+      if (level.size() % 2 == 1) {
+        parents.add(level.get(level.size() - 1));
+      }
+      level = parents;
+    }
+    return level.get(0);
+  }
+}
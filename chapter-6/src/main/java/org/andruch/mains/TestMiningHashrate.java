@@ -0,0 +1,59 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import org.andruch.Block;
+import org.andruch.Hash256;
+import org.andruch.MiningEngine;
+import org.andruch.MiningMetrics;
+import org.andruch.Transaction;
+import org.andruch.UtilityMethods;
+
+// Mines the same kind of block with 1 to N worker threads and prints the hashrate of each run.
+public class TestMiningHashrate {
+  public static void main(String[] args) {
+    int difficultyLevel = args.length > 0 ? Integer.parseInt(args[0]) : 18;
+    int blocksPerRun = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int maxThreads = Runtime.getRuntime().availableProcessors();
+    KeyPair miner = UtilityMethods.generateKeyPair();
+
+    System.out.println(
+        "difficulty="
+            + difficultyLevel
+            + ", blocks per run="
+            + blocksPerRun
+            + ", cores="
+            + maxThreads);
+    double singleThreadRate = 0;
+    // 1, 2, 4, ... and finally every core
+    List<Integer> runs = new ArrayList<>();
+    for (int threads = 1; threads < maxThreads; threads *= 2) {
+      runs.add(threads);
+    }
+    runs.add(maxThreads);
+    for (int threads : runs) {
+      MiningEngine engine = new MiningEngine(threads);
+      long start = System.nanoTime();
+      for (int i = 0; i < blocksPerRun; i++) {
+        Block block = new Block(Hash256.ZERO, difficultyLevel, miner.getPublic());
+        // a block needs at least one transaction to compute its merkle root
+        Transaction reward = new Transaction(miner.getPublic(), miner.getPublic(), 100.0, null);
+        reward.signTheTransaction(miner.getPrivate());
+        block.setRewardTransaction(miner.getPublic(), reward);
+        block.mineTheBlock(miner.getPublic(), engine);
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      double rate = engine.getHashesTried() / seconds;
+      if (threads == 1) {
+        singleThreadRate = rate;
+      }
+      System.out.printf(
+          "threads=%3d  hashes=%12d  time=%8.2fs  hashrate=%12.0f H/s  speedup=%.2fx%n",
+          threads, engine.getHashesTried(), seconds, rate, rate / singleThreadRate);
+      engine.shutdown();
+    }
+    MiningMetrics.global().print(System.out, 0);
+  }
+}
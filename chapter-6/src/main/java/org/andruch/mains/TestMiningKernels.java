@@ -0,0 +1,87 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.security.KeyPair;
+import java.util.Random;
+import org.andruch.Block;
+import org.andruch.Hash256;
+import org.andruch.MiningKernel;
+import org.andruch.Transaction;
+import org.andruch.UtilityMethods;
+
+// Checks that the vector mining kernel finds the same nonces as the scalar one, then compares the
+// hashes per second of both kernels on a single core.
+// Run it with --add-modules jdk.incubator.vector to have the vector kernel available.
+public class TestMiningKernels {
+  private static final int BATCH = 1024;
+
+  public static void main(String[] args) {
+    long hashesPerRound = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+    KeyPair miner = UtilityMethods.generateKeyPair();
+    // the difficulty is too high to ever be met, so every kernel hashes the same number of nonces
+    Block block = new Block(Hash256.ZERO, 256, miner.getPublic());
+    Transaction reward = new Transaction(miner.getPublic(), miner.getPublic(), 100.0, null);
+    reward.signTheTransaction(miner.getPrivate());
+    block.setRewardTransaction(miner.getPublic(), reward);
+
+    MiningKernel best = MiningKernel.best();
+    MiningKernel[] kernels =
+        best.getName().equals("scalar")
+            ? new MiningKernel[] {best}
+            : new MiningKernel[] {MiningKernel.scalar(), best};
+    if (kernels.length == 1) {
+      System.out.println("Vector API not available, only the scalar kernel is measured");
+    } else {
+      checkSameResults(kernels[0], kernels[1], miner);
+    }
+    for (MiningKernel kernel : kernels) {
+      MiningKernel.NonceSearcher searcher = kernel.prepare(block);
+      // warm up, then measure
+      run(searcher, hashesPerRound / 5);
+      for (int round = 1; round <= 3; round++) {
+        long start = System.nanoTime();
+        run(searcher, hashesPerRound);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(
+            "%-12s round %d: %12.0f H/s%n", kernel.getName(), round, hashesPerRound / seconds);
+      }
+    }
+  }
+
+  // Searches random ranges of random blocks at low difficulty levels, where most ranges hold a
+  // solution, and above the largest level, where none can
+  private static void checkSameResults(MiningKernel scalar, MiningKernel vector, KeyPair miner) {
+    Random random = new Random(42);
+    byte[] digest = new byte[Hash256.LENGTH];
+    int found = 0;
+    for (int i = 0; i < 2000; i++) {
+      random.nextBytes(digest);
+      int difficultyLevel = i % 100 == 0 ? 257 + random.nextInt(10) : 1 + random.nextInt(10);
+      Block block = new Block(Hash256.of(digest), difficultyLevel, miner.getPublic());
+      long firstNonce = random.nextLong();
+      int count = 1 + random.nextInt(BATCH);
+      int expected = scalar.prepare(block).search(firstNonce, count);
+      int actual = vector.prepare(block).search(firstNonce, count);
+      if (expected != actual) {
+        throw new IllegalStateException(
+            "level "
+                + difficultyLevel
+                + ", nonce "
+                + firstNonce
+                + ": "
+                + expected
+                + " != "
+                + actual);
+      }
+      found += expected >= 0 ? 1 : 0;
+    }
+    System.out.println(
+        "the kernels agree on 2000 random searches, " + found + " of which found a nonce");
+  }
+
+  private static void run(MiningKernel.NonceSearcher searcher, long hashes) {
+    for (long nonce = 0; nonce < hashes; nonce += BATCH) {
+      searcher.search(nonce, BATCH);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import org.andruch.Block;
+import org.andruch.Blockchain;
+import org.andruch.Hash256;
+import org.andruch.Miner;
+import org.andruch.MiningMetrics;
+import org.andruch.MiningScheduler;
+import org.andruch.SignatureCache;
+import org.andruch.Wallet;
+
+// Stress test: many miners and wallets in one JVM, all mining and validating at the same time.
+// Arguments: number of miners, number of wallets, seconds to run.
+public class TestMiningScheduler {
+  public static void main(String[] args) throws InterruptedException {
+    int numberOfMiners = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    int numberOfWallets = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    Miner genesisMiner = new Miner("genesis", "genesis");
+    Block genesisBlock = new Block(Hash256.ZERO, 12, genesisMiner.getPublicKey());
+    genesisMiner.generateRewardTransaction(genesisBlock);
+    genesisMiner.mineBlock(genesisBlock);
+    // a short block interval, so that plenty of blocks compete during the test
+    Blockchain ledger = new Blockchain(genesisBlock, 200);
+
+    MiningScheduler scheduler = new MiningScheduler(Runtime.getRuntime().availableProcessors());
+    for (int i = 0; i < numberOfMiners; i++) {
+      Miner m = new Miner("stress miner " + i, "miner" + i);
+      m.setLocalLedger(ledger.copy_NotDeepCopy());
+      scheduler.addMiner(m);
+    }
+    for (int i = 0; i < numberOfWallets; i++) {
+      Wallet w = new Wallet("stress wallet " + i, "wallet" + i);
+      w.setLocalLedger(ledger.copy_NotDeepCopy());
+      scheduler.addWallet(w);
+    }
+
+    System.out.println(
+        "running "
+            + scheduler.getNumberOfMiners()
+            + " miners and "
+            + numberOfWallets
+            + " wallets on "
+            + scheduler.getCarrierThreads()
+            + " carrier threads for "
+            + seconds
+            + " s");
+    long start = System.nanoTime();
+    scheduler.start();
+    Thread.sleep(seconds * 1000L);
+    scheduler.stop();
+    double elapsed = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("hashrate:            %.0f H/s%n", scheduler.getHashesTried() / elapsed);
+    System.out.println("blocks mined:        " + scheduler.getBlocksMined());
+    System.out.println("blocks accepted:     " + scheduler.getBlocksAccepted());
+    System.out.println("blocks rejected:     " + scheduler.getBlocksRejected());
+    System.out.println("chain switches:      " + scheduler.getChainSwitches());
+    System.out.println("templates abandoned: " + scheduler.getTemplatesAbandoned());
+    MiningMetrics.global().print(System.out, 0);
+    SignatureCache.global().print(System.out, 0);
+  }
+}
@@ -0,0 +1,75 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.andruch.Hash256;
+import org.andruch.MerkleTree;
+
+// Checks that the parallel merkle root is the sequential one for any number of leaves and any
+// threshold, then times both for 256 to 262,144 leaves, to find where the parallel one wins.
+// JMH is not available to this project, so the times come from plain timed loops after a warm up.
+public class TestParallelMerkle {
+  private static final int[] SIZES = {256, 1024, 4096, 16_384, 65_536, 262_144};
+  private static final int[] THRESHOLDS = {256, 1024, MerkleTree.PARALLEL_THRESHOLD, 16_384};
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    List<Hash256> leaves = randomLeaves(random, SIZES[SIZES.length - 1]);
+    for (int size = 0; size <= 1100; size++) {
+      List<Hash256> some = leaves.subList(0, size);
+      Hash256 expected = MerkleTree.build(some).getRoot();
+      for (int threshold : new int[] {1, 2, 3, 7, 64}) {
+        if (!expected.equals(MerkleTree.computeRoot(some, threshold))) {
+          throw new IllegalStateException(size + " leaves, threshold " + threshold);
+        }
+      }
+    }
+    System.out.println("the parallel roots of 0 to 1100 leaves are the sequential ones");
+
+    System.out.println(
+        "common pool parallelism " + ForkJoinPool.commonPool().getParallelism() + ", times in us");
+    StringBuilder header = new StringBuilder(String.format("%8s %12s", "leaves", "sequential"));
+    for (int threshold : THRESHOLDS) {
+      header.append(String.format(" %12s", "above " + threshold));
+    }
+    System.out.println(header);
+    for (int round = 0; round < 2; round++) {
+      for (int size : SIZES) {
+        List<Hash256> some = leaves.subList(0, size);
+        int repeat = Math.max(3, 1_000_000 / size);
+        StringBuilder line =
+            new StringBuilder(
+                String.format("%8d %12.1f", size, time(some, Integer.MAX_VALUE, repeat)));
+        for (int threshold : THRESHOLDS) {
+          line.append(String.format(" %12.1f", time(some, threshold, repeat)));
+        }
+        if (round > 0) {
+          System.out.println(line);
+        }
+      }
+    }
+  }
+
+  private static double time(List<Hash256> leaves, int threshold, int repeat) {
+    Hash256 root = null;
+    long start = System.nanoTime();
+    for (int r = 0; r < repeat; r++) {
+      root = MerkleTree.computeRoot(leaves, threshold);
+    }
+    double us = (System.nanoTime() - start) / 1e3 / repeat;
+    return root == null ? -1 : us;
+  }
+
+  private static List<Hash256> randomLeaves(Random random, int size) {
+    List<Hash256> leaves = new ArrayList<>(size);
+    byte[] digest = new byte[Hash256.LENGTH];
+    for (int i = 0; i < size; i++) {
+      random.nextBytes(digest);
+      leaves.add(Hash256.of(digest));
+    }
+    return leaves;
+  }
+}
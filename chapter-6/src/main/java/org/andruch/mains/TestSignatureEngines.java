@@ -0,0 +1,122 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.andruch.SignatureScheme;
+
+// Measures concurrent block validation with a new Signature looked up for every signature, as
+// before, against the engines SignatureScheme keeps per thread, verifying from arrays and from a
+// direct ByteBuffer. Every validator thread verifies all the signatures of the same blocks, going
+// around the signature cache so that every signature really goes through the algorithm.
+// JMH is not available to this project, so the times come from plain timed loops after a warm up.
+public class TestSignatureEngines {
+  private static final int TRANSACTIONS = 100;
+  private static final int PAYLOAD_SIZE = 400;
+
+  interface Verifier {
+    boolean verify(PublicKey key, byte[] signature, int transaction) throws Exception;
+  }
+
+  public static void main(String[] args) throws Exception {
+    int validators = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    int blocks = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    System.out.println(
+        validators
+            + " validators on "
+            + Runtime.getRuntime().availableProcessors()
+            + " cores, each verifying "
+            + blocks
+            + " blocks of "
+            + TRANSACTIONS
+            + " transactions");
+    ExecutorService pool = Executors.newFixedThreadPool(validators);
+    try {
+      for (SignatureScheme scheme : SignatureScheme.values()) {
+        run(scheme, pool, validators, blocks);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private static void run(SignatureScheme scheme, ExecutorService pool, int validators, int blocks)
+      throws Exception {
+    KeyPair[] senders = new KeyPair[4];
+    for (int i = 0; i < senders.length; i++) {
+      senders[i] = scheme.generateKeyPair();
+    }
+    Random random = new Random(42);
+    byte[][] payloads = new byte[TRANSACTIONS][PAYLOAD_SIZE];
+    byte[][] signatures = new byte[TRANSACTIONS][];
+    ByteBuffer direct = ByteBuffer.allocateDirect(TRANSACTIONS * PAYLOAD_SIZE);
+    for (int i = 0; i < TRANSACTIONS; i++) {
+      random.nextBytes(payloads[i]);
+      signatures[i] =
+          scheme.sign(senders[i % senders.length].getPrivate(), payloads[i], 0, PAYLOAD_SIZE);
+      direct.put(payloads[i]);
+    }
+
+    Verifier lookedUp =
+        (key, signature, i) -> {
+          Signature sig =
+              Signature.getInstance(scheme == SignatureScheme.RSA ? "SHA256withRSA" : "Ed25519");
+          sig.initVerify(key);
+          sig.update(payloads[i]);
+          return sig.verify(signature);
+        };
+    Verifier pooled =
+        (key, signature, i) -> scheme.verify(key, signature, payloads[i], 0, PAYLOAD_SIZE);
+    Verifier buffer =
+        (key, signature, i) ->
+            scheme.verify(key, signature, direct.slice(i * PAYLOAD_SIZE, PAYLOAD_SIZE));
+
+    System.out.println(scheme + ", microseconds per signature:");
+    for (int round = 0; round < 5; round++) {
+      System.out.printf(
+          "  getInstance() %8.1f, pooled engines %8.1f, pooled from ByteBuffer %8.1f%n",
+          time(pool, validators, blocks, senders, signatures, lookedUp),
+          time(pool, validators, blocks, senders, signatures, pooled),
+          time(pool, validators, blocks, senders, signatures, buffer));
+    }
+  }
+
+  // Wall clock microseconds per verified signature, all validators together
+  private static double time(
+      ExecutorService pool,
+      int validators,
+      int blocks,
+      KeyPair[] senders,
+      byte[][] signatures,
+      Verifier verifier)
+      throws Exception {
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int v = 0; v < validators; v++) {
+      tasks.add(
+          () -> {
+            for (int b = 0; b < blocks; b++) {
+              for (int i = 0; i < TRANSACTIONS; i++) {
+                if (!verifier.verify(senders[i % senders.length].getPublic(), signatures[i], i)) {
+                  throw new IllegalStateException("transaction " + i + " does not verify");
+                }
+              }
+            }
+            return null;
+          });
+    }
+    long start = System.nanoTime();
+    for (Future<Void> f : pool.invokeAll(tasks)) {
+      f.get();
+    }
+    return (System.nanoTime() - start) / 1e3 / ((long) validators * blocks * TRANSACTIONS);
+  }
+}
@@ -0,0 +1,115 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import org.andruch.Block;
+import org.andruch.Blockchain;
+import org.andruch.Hash256;
+import org.andruch.Miner;
+import org.andruch.SignatureScheme;
+import org.andruch.Transaction;
+import org.andruch.UTXO;
+import org.andruch.Wallet;
+
+// Compares the signature schemes: key generation, signing and verification times, and the sizes of
+// a key, a signature and a serialized transaction. Then builds a small Ed25519 blockchain and shows
+// that it refuses a block mined by an RSA miner.
+// JMH is not available to this project, so the times come from plain timed loops after a warm up.
+public class TestSignatureSchemes {
+  public static void main(String[] args) throws IOException {
+    int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    byte[] message = new byte[256];
+    System.out.printf(
+        "%-8s %12s %12s %12s %10s %10s %12s%n",
+        "scheme", "keygen us", "sign us", "verify us", "key bytes", "sig bytes", "transaction");
+    for (SignatureScheme scheme : SignatureScheme.values()) {
+      // warm up
+      measure(scheme, message, rounds / 4);
+      double[] times = measure(scheme, message, rounds);
+      KeyPair keys = scheme.generateKeyPair();
+      byte[] signature = scheme.sign(keys.getPrivate(), message, 0, message.length);
+      System.out.printf(
+          "%-8s %12.1f %12.1f %12.1f %10d %10d %12d%n",
+          scheme,
+          times[0],
+          times[1],
+          times[2],
+          keys.getPublic().getEncoded().length,
+          signature.length,
+          transactionSize(keys));
+    }
+
+    System.out.println();
+    Miner genesisMiner = new Miner("genesis", "genesis", SignatureScheme.ED25519);
+    Block genesisBlock = new Block(Hash256.ZERO, 12, genesisMiner.getPublicKey());
+    genesisMiner.generateRewardTransaction(genesisBlock);
+    genesisMiner.mineBlock(genesisBlock);
+    Blockchain ledger = new Blockchain(genesisBlock);
+    System.out.println("the blockchain uses " + ledger.getSignatureScheme());
+    Wallet B = new Wallet("B", "B", SignatureScheme.ED25519);
+    B.setLocalLedger(ledger.copy_NotDeepCopy());
+
+    Miner ed = new Miner("A", "A", SignatureScheme.ED25519);
+    Miner rsa = new Miner("C", "C");
+    ed.setLocalLedger(ledger.copy_NotDeepCopy());
+    System.out.println(
+        "the RSA miner attached the blockchain: " + rsa.setLocalLedger(ledger.copy_NotDeepCopy()));
+    // the RSA miner builds on the chain anyway, without a ledger of its own
+    Block byRsa =
+        new Block(
+            ledger.getLastBlock().getHashID(), ledger.getNextDifficultyLevel(), rsa.getPublicKey());
+    rsa.generateRewardTransaction(byRsa);
+    rsa.mineBlock(byRsa);
+    System.out.println("B accepted the block of the RSA miner: " + B.updateLocalLedger(byRsa));
+    Block byEd = ed.createBlockTemplate(new ArrayList<>());
+    ed.mineBlock(byEd);
+    System.out.println("B accepted the block of the Ed25519 miner: " + B.updateLocalLedger(byEd));
+  }
+
+  // Microseconds to generate a key pair, to sign and to verify
+  private static double[] measure(SignatureScheme scheme, byte[] message, int rounds) {
+    // RSA key generation takes long, a few key pairs are enough to time it
+    int keyPairs = scheme == SignatureScheme.RSA ? Math.max(1, rounds / 20) : rounds;
+    long start = System.nanoTime();
+    KeyPair keys = null;
+    for (int i = 0; i < keyPairs; i++) {
+      keys = scheme.generateKeyPair();
+    }
+    double keygen = (System.nanoTime() - start) / 1e3 / keyPairs;
+
+    byte[] signature = null;
+    start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      message[0] = (byte) i;
+      signature = scheme.sign(keys.getPrivate(), message, 0, message.length);
+    }
+    double sign = (System.nanoTime() - start) / 1e3 / rounds;
+
+    start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      if (!scheme.verify(keys.getPublic(), signature, message, 0, message.length)) {
+        throw new IllegalStateException("the signature does not verify");
+      }
+    }
+    double verify = (System.nanoTime() - start) / 1e3 / rounds;
+    return new double[] {keygen, sign, verify};
+  }
+
+  // Serialized size of a signed transaction with one input, one receiver and the change
+  private static int transactionSize(KeyPair keys) throws IOException {
+    ArrayList<UTXO> inputs = new ArrayList<>();
+    inputs.add(new UTXO(Hash256.ZERO, keys.getPublic(), keys.getPublic(), 100));
+    Transaction t = new Transaction(keys.getPublic(), keys.getPublic(), 10, inputs);
+    t.prepareOutputUTXOs();
+    t.signTheTransaction(keys.getPrivate());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(t);
+    }
+    return bytes.size();
+  }
+}
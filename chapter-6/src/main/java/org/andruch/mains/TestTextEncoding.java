@@ -0,0 +1,154 @@
+/* Copyright © 2023 Andreas Börjesson AB */
+package org.andruch.mains;
+
+import java.lang.management.ManagementFactory;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import org.andruch.Hash256;
+import org.andruch.TextEncoding;
+import org.andruch.UtilityMethods;
+
+// Checks that TextEncoding writes the same binary, hex and Base64 forms as the code it replaces,
+// then measures the time and the bytes allocated per call of each.
+// JMH and its GC profiler are not available to this project, so the allocations are read from the
+// thread's allocation counter (com.sun.management.ThreadMXBean) around plain timed loops.
+public class TestTextEncoding {
+  private static final int ROUNDS = 1_000_000;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  // Keeps the JIT from dropping the measured work
+  private static long sink;
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    for (int length = 0; length < 100; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+      check(oldBinaryString(data), TextEncoding.toBinaryString(data), "binary", length);
+      char[] base64 = new char[TextEncoding.base64Length(length)];
+      TextEncoding.writeBase64(data, 0, length, base64, 0);
+      check(TextEncoding.toBase64(data), new String(base64), "writeBase64", length);
+      check(HexFormat.of().formatHex(data), TextEncoding.toHexString(data), "hex", length);
+      check(
+          Base64.getEncoder().encodeToString(data), TextEncoding.toBase64(data), "Base64", length);
+    }
+    byte[][] digests = new byte[1024][Hash256.LENGTH];
+    Hash256[] hashes = new Hash256[digests.length];
+    String[] binaryIDs = new String[digests.length];
+    for (int i = 0; i < digests.length; i++) {
+      random.nextBytes(digests[i]);
+      // some with a proof of work, as block hashIDs have
+      for (int j = 0; j < i % 5; j++) {
+        digests[i][j] = (byte) 0x80;
+      }
+      hashes[i] = Hash256.of(digests[i]);
+      binaryIDs[i] = oldBinaryString(digests[i]);
+      check(binaryIDs[i], hashes[i].toBinaryString(), "Hash256 binary", i);
+      check(
+          Base64.getEncoder().encodeToString(digests[i]),
+          hashes[i].toBase64(),
+          "Hash256 Base64",
+          i);
+      char[] base64 = new char[Hash256.BASE64_LENGTH];
+      hashes[i].writeBase64(base64, 0);
+      check(hashes[i].toBase64(), new String(base64), "Hash256.writeBase64", i);
+      int zeros = binaryIDs[i].indexOf('1') < 0 ? 256 : binaryIDs[i].indexOf('1');
+      if (zeros != hashes[i].countLeadingZeroBinaryChars()
+          || zeros != TextEncoding.countLeadingZeroChars(binaryIDs[i])
+          || zeros != UtilityMethods.countLeadingZeroBinaryChars(digests[i])) {
+        throw new IllegalStateException("leading zeros of hash " + i);
+      }
+    }
+    System.out.println("all encodings match the old ones");
+
+    int mask = digests.length - 1;
+    char[] buffer = new char[Hash256.BINARY_LENGTH];
+    for (int round = 0; round < 3; round++) {
+      System.out.println("round " + round + ", per call:");
+      measure("old toBinaryString", i -> sink += oldBinaryString(digests[i & mask]).length());
+      measure(
+          "TextEncoding.toBinaryString",
+          i -> sink += TextEncoding.toBinaryString(digests[i & mask]).length());
+      measure(
+          "TextEncoding.writeBinary",
+          i -> sink += TextEncoding.writeBinary(digests[i & mask], 0, Hash256.LENGTH, buffer, 0));
+      measure(
+          "Hash256.writeBinary",
+          i -> {
+            hashes[i & mask].writeBinary(buffer, 0);
+            sink += buffer[i & 0xFF];
+          });
+      measure(
+          "Base64 encoder",
+          i -> sink += Base64.getEncoder().encodeToString(digests[i & mask]).length());
+      measure(
+          "TextEncoding.writeBase64",
+          i -> sink += TextEncoding.writeBase64(digests[i & mask], 0, Hash256.LENGTH, buffer, 0));
+      measure(
+          "Hash256.writeBase64",
+          i -> {
+            hashes[i & mask].writeBase64(buffer, 0);
+            sink += buffer[i % Hash256.BASE64_LENGTH];
+          });
+      measure(
+          "old difficulty check on a String",
+          i -> sink += oldHashMeetsDifficultyLevel(binaryIDs[i & mask], 16) ? 1 : 0);
+      measure(
+          "difficulty check on a String",
+          i -> sink += UtilityMethods.hashMeetsDifficultyLevel(binaryIDs[i & mask], 16) ? 1 : 0);
+      measure(
+          "difficulty check on a Hash256",
+          i -> sink += hashes[i & mask].meetsDifficultyLevel(16) ? 1 : 0);
+    }
+    System.out.println(sink == 42 ? "" : "done");
+  }
+
+  private static void measure(String name, IntConsumer call) {
+    long thread = Thread.currentThread().getId();
+    long allocated = THREADS.getThreadAllocatedBytes(thread);
+    long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      call.accept(i);
+    }
+    long nanos = System.nanoTime() - start;
+    allocated = THREADS.getThreadAllocatedBytes(thread) - allocated;
+    System.out.printf(
+        "  %-34s %8.1f ns %8.1f bytes%n",
+        name, (double) nanos / ROUNDS, (double) allocated / ROUNDS);
+  }
+
+  private static void check(String expected, String actual, String what, int i) {
+    if (!expected.equals(actual)) {
+      throw new IllegalStateException(what + " " + i + ": " + actual + " instead of " + expected);
+    }
+  }
+
+  // UtilityMethods.toBinaryString() as it was
+  private static String oldBinaryString(byte[] hash) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < hash.length; i++) {
+      int x = ((int) hash[i]) + 128;
+      StringBuilder s = new StringBuilder(Integer.toBinaryString(x));
+      while (s.length() < 8) {
+        s.insert(0, "0");
+      }
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
+  // UtilityMethods.hashMeetsDifficultyLevel(String, int) as it was
+  private static boolean oldHashMeetsDifficultyLevel(String hash, int difficultyLevel) {
+    char[] c = hash.toCharArray();
+    for (int i = 0; i < difficultyLevel; i++) {
+      if (c[i] != '0') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -4,6 +4,7 @@ package org.andruch.mains;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.ArrayList;
+import org.andruch.Hash256;
 import org.andruch.PrintUtils;
 import org.andruch.Transaction;
 import org.andruch.UTXO;
@@ -22,7 +23,7 @@ public class TestTransaction {
     }
     // Since we don't have a wallet class to make the transaction,
     // we need to manually create the input UTXOs and output UTXO.
-    UTXO in = new UTXO("0", sender.getPublic(), sender.getPublic(), 1000);
+    UTXO in = new UTXO(Hash256.ZERO, sender.getPublic(), sender.getPublic(), 1000);
     ArrayList<UTXO> ins = new ArrayList<>();
     ins.add(in);
 